@@ -0,0 +1,326 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Throughput benchmark for the Huffman codec. Reports MB/s and bytes
+ * allocated per operation for each operation, input size and entropy
+ * profile, so a change to the codec can be compared before and after.
+ *
+ * Build and run from the module directory:
+ *      javac -d out -cp junit.jar src/*.java bench/*.java
+ *      java -Xmx2g -cp out HuffmanBenchmark [options]
+ *
+ * Options:
+ *      --sizes 1K,64K,1M,16M,100M  -- input sizes (K and M suffixes)
+ *      --profiles uniform,english,skewed
+ *      --string-max 1M  -- largest input for the String API, whose
+ *                          encoded text takes 16 bytes per input bit
+ *      --time 1         -- seconds of warmup and of measurement per case
+ *
+ * Each case is warmed up, then run repeatedly for the measurement time;
+ * the MB/s figure is input bytes over the mean time per operation.
+ * Allocation comes from the JVM's per-thread allocation counter, and is
+ * reported as n/a when the JVM doesn't provide one.
+ */
+public class HuffmanBenchmark {
+    // Results are folded in here so the JIT can't drop the work
+    static volatile long sink;
+
+    private static final String[] WORDS = {
+        "the", "of", "and", "to", "a", "in", "is", "that", "it", "was",
+        "for", "on", "are", "as", "with", "his", "they", "at", "be", "this",
+        "from", "have", "or", "by", "one", "had", "not", "but", "what", "all",
+        "were", "when", "we", "there", "can", "an", "your", "which", "their", "said",
+        "if", "do", "will", "each", "about", "how", "up", "out", "them", "then",
+        "she", "many", "some", "so", "these", "would", "other", "into", "has", "more",
+        "her", "two", "like", "him", "see", "time", "could", "no", "make", "than",
+        "first", "been", "its", "who", "now", "people", "my", "made", "over", "did",
+        "down", "only", "way", "find", "use", "may", "water", "long", "little", "very",
+        "after", "words", "called", "just", "where", "most", "know", "Huffman", "code", "tree"
+    };
+
+    /**
+     * One benchmarked operation on a prepared input.
+     */
+    private static abstract class Op {
+        final String name;
+
+        Op(String name) {
+            this.name = name;
+        }
+
+        /** Sets up whatever run() needs; not timed. */
+        abstract void prepare(byte[] data) throws IOException;
+
+        /** @return a value derived from the result, to keep it live */
+        abstract long run() throws IOException;
+
+        /** @return bytes of input each run() processes */
+        abstract long bytesPerOp();
+
+        /** @return whether this op runs at the given input size */
+        boolean handles(int size, int stringMax) {
+            return true;
+        }
+    }
+
+    /**
+     * Ops on the String API: encode(), getEncodedText(), parseTree() and decode().
+     */
+    private static abstract class StringOp extends Op {
+        String text;
+        HuffmanEncoder encoded;
+
+        StringOp(String name) {
+            super(name);
+        }
+
+        @Override
+        void prepare(byte[] data) throws IOException {
+            text = new String(data, StandardCharsets.ISO_8859_1);
+            encoded = new HuffmanEncoder();
+            encoded.encode(text);
+        }
+
+        @Override
+        long bytesPerOp() {
+            return text.length();
+        }
+
+        @Override
+        boolean handles(int size, int stringMax) {
+            return size <= stringMax;
+        }
+    }
+
+    private static List<Op> ops() {
+        List<Op> ops = new ArrayList<Op>();
+        ops.add(new StringOp("encode") {
+            @Override long run() {
+                HuffmanEncoder he = new HuffmanEncoder();
+                he.encode(text);
+                return he.getEncodedTree().length();
+            }
+        });
+        ops.add(new StringOp("getEncodedText") {
+            @Override long run() {
+                // Clears the cached text so the whole bit string is rebuilt
+                encoded.encodedText = null;
+                return encoded.getEncodedText().length();
+            }
+        });
+        ops.add(new StringOp("parseTree") {
+            String tree;
+
+            @Override void prepare(byte[] data) throws IOException {
+                super.prepare(data);
+                tree = encoded.getEncodedTree();
+            }
+
+            @Override long run() {
+                return new HuffmanDecoder().parseTree(tree) ? 1 : 0;
+            }
+
+            @Override long bytesPerOp() {
+                return tree.length();
+            }
+        });
+        ops.add(new StringOp("decode") {
+            HuffmanDecoder hd;
+            String bits;
+
+            @Override void prepare(byte[] data) throws IOException {
+                super.prepare(data);
+                hd = new HuffmanDecoder();
+                hd.parseTree(encoded.getEncodedTree());
+                bits = encoded.getEncodedText();
+            }
+
+            @Override long run() {
+                return hd.decode(bits).length();
+            }
+        });
+        ops.add(new Op("count+compress") {
+            byte[] data;
+            ByteArrayOutputStream out;
+
+            @Override void prepare(byte[] data) {
+                this.data = data;
+                out = new ByteArrayOutputStream(data.length + 1024);
+            }
+
+            @Override long run() throws IOException {
+                out.reset();
+                HuffmanEncoder he = new HuffmanEncoder();
+                he.count(new ByteArrayInputStream(data));
+                return he.compress(new ByteArrayInputStream(data), out);
+            }
+
+            @Override long bytesPerOp() {
+                return data.length;
+            }
+        });
+        ops.add(new Op("decompress") {
+            byte[] compressed;
+            int size;
+            ByteArrayOutputStream out;
+
+            @Override void prepare(byte[] data) throws IOException {
+                ByteArrayOutputStream c = new ByteArrayOutputStream();
+                HuffmanEncoder he = new HuffmanEncoder();
+                he.count(new ByteArrayInputStream(data));
+                he.compress(new ByteArrayInputStream(data), c);
+                compressed = c.toByteArray();
+                size = data.length;
+                out = new ByteArrayOutputStream(size);
+            }
+
+            @Override long run() throws IOException {
+                out.reset();
+                return new HuffmanDecoder().decompress(new ByteArrayInputStream(compressed), out);
+            }
+
+            @Override long bytesPerOp() {
+                return size;
+            }
+        });
+        ops.add(new Op("interleaved-dec") {
+            byte[] compressed;
+            int size;
+            ByteArrayOutputStream out;
+
+            @Override void prepare(byte[] data) throws IOException {
+                ByteArrayOutputStream c = new ByteArrayOutputStream();
+                new HuffmanInterleavedCompressor().compress(data, c);
+                compressed = c.toByteArray();
+                size = data.length;
+                out = new ByteArrayOutputStream(size);
+            }
+
+            @Override long run() throws IOException {
+                out.reset();
+                return new HuffmanInterleavedCompressor().decompress(new ByteArrayInputStream(compressed), out);
+            }
+
+            @Override long bytesPerOp() {
+                return size;
+            }
+        });
+        return ops;
+    }
+
+    /**
+     * @param profile -- uniform, english or skewed
+     * @param size -- number of bytes
+     * @return reproducible input of the given entropy profile
+     */
+    static byte[] input(String profile, int size) {
+        Random rng = new Random(size);
+        byte[] data = new byte[size];
+        if (profile.equals("uniform")) {
+            rng.nextBytes(data);
+        } else if (profile.equals("english")) {
+            // Words picked with a Zipf-like bias, as in running text
+            int pos = 0;
+            while (pos < size) {
+                int r = rng.nextInt(WORDS.length);
+                String w = WORDS[rng.nextInt(r + 1)];
+                for (int i = 0; i < w.length() && pos < size; i++) data[pos++] = (byte) w.charAt(i);
+                if (pos < size) data[pos++] = (byte) (rng.nextInt(12) == 0 ? '\n' : ' ');
+            }
+        } else if (profile.equals("skewed")) {
+            // Roughly geometric: each symbol about half as common as the one before
+            for (int i = 0; i < size; i++) {
+                data[i] = (byte) ('a' + Math.min(25, Integer.numberOfTrailingZeros(rng.nextInt() | (1 << 25))));
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown profile " + profile);
+        }
+        return data;
+    }
+
+    /**
+     * @return bytes allocated so far by this thread, or -1 if unknown
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Runs op until the time budget is used up, at least twice.
+     *
+     * @return {nanoseconds, operations, allocated bytes or -1}
+     */
+    private static long[] measure(Op op, long budgetNanos) throws IOException {
+        long ops = 0;
+        long allocBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            sink += op.run();
+            ops++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < budgetNanos || ops < 2);
+        long allocAfter = allocatedBytes();
+        long alloc = (allocBefore < 0 || allocAfter < 0) ? -1 : allocAfter - allocBefore;
+        return new long[] { elapsed, ops, alloc };
+    }
+
+    private static int parseSize(String s) {
+        s = s.trim().toUpperCase();
+        int mult = 1;
+        if (s.endsWith("K")) mult = 1 << 10;
+        else if (s.endsWith("M")) mult = 1 << 20;
+        if (mult != 1) s = s.substring(0, s.length() - 1);
+        return Integer.parseInt(s) * mult;
+    }
+
+    public static void main(String args[]) throws IOException {
+        String[] sizes = { "1K", "64K", "1M", "16M", "100M" };
+        String[] profiles = { "uniform", "english", "skewed" };
+        int stringMax = 1 << 20;
+        double seconds = 1;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals("--sizes")) sizes = args[i + 1].split(",");
+            else if (args[i].equals("--profiles")) profiles = args[i + 1].split(",");
+            else if (args[i].equals("--string-max")) stringMax = parseSize(args[i + 1]);
+            else if (args[i].equals("--time")) seconds = Double.parseDouble(args[i + 1]);
+            else throw new IllegalArgumentException("Unknown option " + args[i]);
+        }
+        long budget = (long) (seconds * 1e9);
+
+        System.out.printf("%-16s %-8s %8s %12s %10s %16s%n", "op", "profile", "size", "ops", "MB/s", "alloc B/op");
+        for (String profile : profiles) {
+            for (String sizeText : sizes) {
+                int size = parseSize(sizeText);
+                byte[] data = input(profile, size);
+                for (Op op : ops()) {
+                    if (!op.handles(size, stringMax)) continue;
+                    op.prepare(data);
+                    measure(op, budget);
+                    long[] m = measure(op, budget);
+                    double nanosPerOp = (double) m[0] / m[1];
+                    double mbPerSec = op.bytesPerOp() / nanosPerOp * 1e9 / (1 << 20);
+                    String alloc = (m[2] < 0) ? "n/a" : String.valueOf(m[2] / m[1]);
+                    System.out.printf("%-16s %-8s %8s %12d %10.1f %16s%n",
+                            op.name, profile, sizeText, m[1], mbPerSec, alloc);
+                }
+            }
+        }
+        if (sink == 42) System.out.println();
+    }
+}
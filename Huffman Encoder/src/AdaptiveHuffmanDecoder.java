@@ -0,0 +1,90 @@
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decoder for AdaptiveHuffmanEncoder. Bytes are returned as soon as
+ * their codes arrive, so it can sit on a live stream; after a FLUSH
+ * symbol it reads no further until more bytes are asked for.
+ */
+public class AdaptiveHuffmanDecoder extends InputStream {
+    private final InputStream in;
+    private final BitReader br;
+    private final AdaptiveHuffmanTree tree = new AdaptiveHuffmanTree();
+    private boolean ended;
+    // Returned by next() for a FLUSH symbol
+    private static final int FLUSHED = -2;
+
+    /**
+     * @param in -- compressed stream, closed by close()
+     */
+    public AdaptiveHuffmanDecoder(InputStream in) {
+        this.in = in;
+        br = new BitReader(in);
+    }
+
+    /**
+     * @return the next decoded byte, or -1 after the END symbol
+     * @throws HuffmanDecodeException if the stream stops before END
+     */
+    @Override
+    public int read() throws IOException {
+        int c;
+        while ((c = next()) == FLUSHED) { }
+        return c;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        int c = read();
+        if (c < 0) return -1;
+        b[off] = (byte) c;
+        int n = 1;
+        // Only keep going while there is data already at hand, so a live stream isn't waited on.
+        // A FLUSH ends the read too: what follows it may not have been sent yet.
+        while (n < len && (br.bitsBuffered() > 0 || in.available() > 0)) {
+            c = next();
+            if (c < 0) break;
+            b[off + n++] = (byte) c;
+        }
+        return n;
+    }
+
+    /**
+     * Decodes one symbol.
+     *
+     * @return the decoded byte, FLUSHED after a FLUSH symbol, or -1 after END
+     */
+    private int next() throws IOException {
+        if (ended) return -1;
+        int sym = decode();
+        tree.update(sym);
+        if (sym == AdaptiveHuffmanTree.FLUSH) {
+            br.alignToByte();
+            return FLUSHED;
+        }
+        if (sym == AdaptiveHuffmanTree.END) {
+            ended = true;
+            return -1;
+        }
+        return sym;
+    }
+
+    private int decode() throws IOException {
+        int node = tree.root();
+        while (!tree.isLeaf(node)) {
+            node = tree.child(node, br.readBit());
+        }
+        if (tree.isNyt(node)) {
+            int sym = br.readBits(AdaptiveHuffmanTree.SYMBOL_BITS);
+            if (sym >= AdaptiveHuffmanTree.SYMBOLS || tree.leafOf(sym) >= 0) { throw new HuffmanDecodeException(); }
+            return sym;
+        }
+        return tree.symbol(node);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
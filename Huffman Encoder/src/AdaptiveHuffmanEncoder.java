@@ -0,0 +1,212 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * One-pass adaptive Huffman compressor (algorithm FGK). Encoder and
+ * decoder start from the same empty tree and update it after every
+ * symbol, so no counts or tree are sent and nothing is buffered.
+ *
+ * A symbol seen for the first time is sent as the code of the NYT
+ * ("not yet transmitted") leaf followed by the symbol in 9 raw bits.
+ * Besides the 256 byte values there are two control symbols:
+ *      FLUSH -- written by flush(), the stream then continues at the
+ *               next byte boundary, so everything written so far can
+ *               be decoded right away
+ *      END   -- written by close(), marks the end of the stream
+ */
+public class AdaptiveHuffmanEncoder extends OutputStream {
+    private final OutputStream out;
+    private final BitWriter bw;
+    private final AdaptiveHuffmanTree tree = new AdaptiveHuffmanTree();
+    private boolean closed;
+
+    /**
+     * @param out -- destination of the compressed stream, closed by close()
+     */
+    public AdaptiveHuffmanEncoder(OutputStream out) {
+        this.out = out;
+        bw = new BitWriter(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (closed) throw new IOException("Stream closed");
+        encode(b & 0xff);
+    }
+
+    /**
+     * Sends a FLUSH symbol and pads to a byte, then flushes the
+     * underlying stream. The decoder can return every byte written
+     * before this call without waiting for more input.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (closed) return;
+        encode(AdaptiveHuffmanTree.FLUSH);
+        bw.flush();
+    }
+
+    /**
+     * Sends the END symbol, flushes and closes the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        encode(AdaptiveHuffmanTree.END);
+        bw.flush();
+        closed = true;
+        out.close();
+    }
+
+    private void encode(int sym) throws IOException {
+        int leaf = tree.leafOf(sym);
+        boolean fresh = leaf < 0;
+        if (fresh) leaf = tree.nyt();
+        // Collect the path bottom-up, then write it root first
+        int[] path = tree.path;
+        int n = 0;
+        for (int node = leaf; node != tree.root(); node = tree.parent(node)) {
+            path[n++] = tree.isRightChild(node) ? 1 : 0;
+        }
+        while (n > 0) bw.write(path[--n], 1);
+        if (fresh) bw.write(sym, AdaptiveHuffmanTree.SYMBOL_BITS);
+        tree.update(sym);
+    }
+}
+
+/**
+ * The FGK tree shared by AdaptiveHuffmanEncoder and AdaptiveHuffmanDecoder.
+ *
+ * Nodes live in fixed slots numbered so that weights never decrease
+ * with the slot number, and siblings sit in adjacent slots (the sibling
+ * property). The root is the highest slot. After a symbol is seen, each
+ * node on its path is first swapped with the highest slot of equal
+ * weight, then has its weight raised, which keeps the property.
+ */
+class AdaptiveHuffmanTree {
+    static final int FLUSH = 256;
+    static final int END = 257;
+    static final int SYMBOLS = 258;
+    static final int SYMBOL_BITS = 9;
+    // every symbol plus NYT as leaves, and the internal nodes above them
+    private static final int NODES = 2 * SYMBOLS + 1;
+    private static final int INTERNAL = -1;
+    private static final int NYT = -2;
+
+    private final long[] weight = new long[NODES];
+    private final int[] parent = new int[NODES];
+    private final int[] left = new int[NODES];
+    private final int[] right = new int[NODES];
+    private final int[] symbol = new int[NODES];
+    private final int[] leafOf = new int[SYMBOLS];
+    private int nyt;
+    // scratch for the encoder's bottom-up path
+    final int[] path = new int[NODES];
+
+    public AdaptiveHuffmanTree() {
+        Arrays.fill(leafOf, -1);
+        nyt = root();
+        parent[nyt] = -1;
+        left[nyt] = right[nyt] = -1;
+        symbol[nyt] = NYT;
+    }
+
+    public int root() {
+        return NODES - 1;
+    }
+
+    public int nyt() {
+        return nyt;
+    }
+
+    public int parent(int node) {
+        return parent[node];
+    }
+
+    public int child(int node, int bit) {
+        return (bit == 0) ? left[node] : right[node];
+    }
+
+    public boolean isLeaf(int node) {
+        return symbol[node] != INTERNAL;
+    }
+
+    public boolean isNyt(int node) {
+        return symbol[node] == NYT;
+    }
+
+    public int symbol(int node) {
+        return symbol[node];
+    }
+
+    public boolean isRightChild(int node) {
+        return right[parent[node]] == node;
+    }
+
+    /**
+     * @return the leaf of sym, or -1 if it hasn't been seen
+     */
+    public int leafOf(int sym) {
+        return leafOf[sym];
+    }
+
+    /**
+     * Counts one more occurrence of sym, adding a leaf for it if new.
+     */
+    public void update(int sym) {
+        int q = leafOf[sym];
+        if (q < 0) {
+            // NYT becomes an internal node over a new NYT and the new leaf
+            int old = nyt;
+            int leaf = old - 1;
+            nyt = old - 2;
+            symbol[old] = INTERNAL;
+            left[old] = nyt;
+            right[old] = leaf;
+            parent[nyt] = parent[leaf] = old;
+            left[nyt] = right[nyt] = left[leaf] = right[leaf] = -1;
+            symbol[nyt] = NYT;
+            symbol[leaf] = sym;
+            weight[nyt] = weight[leaf] = 0;
+            leafOf[sym] = leaf;
+            q = leaf;
+        }
+        while (q >= 0) {
+            // Highest slot of the same weight, but never q's own parent
+            int leader = q;
+            for (int i = q + 1; i < NODES && weight[i] == weight[q]; i++) {
+                if (i != parent[q]) leader = i;
+            }
+            if (leader != q) {
+                swap(q, leader);
+                q = leader;
+            }
+            weight[q]++;
+            q = parent[q];
+        }
+    }
+
+    /**
+     * Exchanges the subtrees in slots a and b. Each slot keeps its parent.
+     */
+    private void swap(int a, int b) {
+        long w = weight[a]; weight[a] = weight[b]; weight[b] = w;
+        int t = symbol[a]; symbol[a] = symbol[b]; symbol[b] = t;
+        t = left[a]; left[a] = left[b]; left[b] = t;
+        t = right[a]; right[a] = right[b]; right[b] = t;
+        relink(a);
+        relink(b);
+    }
+
+    private void relink(int node) {
+        if (symbol[node] == INTERNAL) {
+            parent[left[node]] = node;
+            parent[right[node]] = node;
+        } else if (symbol[node] == NYT) {
+            nyt = node;
+        } else {
+            leafOf[symbol[node]] = node;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+public class AdaptiveHuffmanTests {
+
+    private byte[] compress(byte[] data) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        AdaptiveHuffmanEncoder enc = new AdaptiveHuffmanEncoder(compressed);
+        enc.write(data);
+        enc.close();
+        return compressed.toByteArray();
+    }
+
+    private byte[] decompress(byte[] compressed) throws IOException {
+        AdaptiveHuffmanDecoder dec = new AdaptiveHuffmanDecoder(new ByteArrayInputStream(compressed));
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        int n;
+        while ((n = dec.read(buf, 0, buf.length)) > 0) {
+            decoded.write(buf, 0, n);
+        }
+        dec.close();
+        return decoded.toByteArray();
+    }
+
+    @Test
+    public void emptyStream() throws IOException {
+        byte[] compressed = compress(new byte[0]);
+        assertEquals(0, decompress(compressed).length);
+    }
+
+    @Test
+    public void bulkReadReturnsManyBytes() throws IOException {
+        byte[] data = new byte[1000];
+        for(int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i % 13);
+        }
+        AdaptiveHuffmanDecoder dec = new AdaptiveHuffmanDecoder(new ByteArrayInputStream(compress(data)));
+        byte[] buf = new byte[data.length];
+        // The whole stream sits in the reader's buffer after the first refill
+        assertEquals(data.length, dec.read(buf, 0, buf.length));
+        assertArrayEquals(data, buf);
+        assertEquals(-1, dec.read(buf, 0, buf.length));
+    }
+
+    @Test
+    public void allByteValues() throws IOException {
+        byte[] data = new byte[3 * 256];
+        for(int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 7);
+        }
+        assertArrayEquals(data, decompress(compress(data)));
+    }
+
+    @Test
+    public void skewedRoundTrip() throws IOException {
+        byte[] data = new byte[200000];
+        Random RNG = new Random(99);
+        for(int i = 0; i < data.length; i++) {
+            data[i] = (byte) (RNG.nextInt(256) & RNG.nextInt(256) & RNG.nextInt(256));
+        }
+        byte[] compressed = compress(data);
+        assertArrayEquals(data, decompress(compressed));
+        assertTrue(compressed.length < data.length * 3 / 4);
+    }
+
+    @Test
+    public void adaptsToChangingInput() throws IOException {
+        byte[] data = new byte[60000];
+        Arrays.fill(data, 0, 30000, (byte) 'a');
+        for(int i = 30000; i < data.length; i++) {
+            data[i] = (byte) ('b' + i % 3);
+        }
+        assertArrayEquals(data, decompress(compress(data)));
+    }
+
+    @Test
+    public void flushedBytesDecodeWithoutTheRest() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        AdaptiveHuffmanEncoder enc = new AdaptiveHuffmanEncoder(compressed);
+        byte[] first = "abracadabra".getBytes("US-ASCII");
+        byte[] second = "more text after the flush".getBytes("US-ASCII");
+        enc.write(first);
+        enc.flush();
+        int prefix = compressed.size();
+        enc.write(second);
+        enc.flush();
+        enc.write(first);
+        enc.close();
+
+        // Only the bytes up to the first flush are available
+        byte[] all = compressed.toByteArray();
+        AdaptiveHuffmanDecoder dec = new AdaptiveHuffmanDecoder(new ByteArrayInputStream(Arrays.copyOf(all, prefix)));
+        for(byte b : first) {
+            assertEquals(b & 0xff, dec.read());
+        }
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(first);
+        expected.write(second);
+        expected.write(first);
+        assertArrayEquals(expected.toByteArray(), decompress(all));
+    }
+
+    @Test(timeout = 10000)
+    public void bulkReadStopsAtFlushOnLiveStream() throws IOException {
+        PipedInputStream pipe = new PipedInputStream(4096);
+        AdaptiveHuffmanEncoder enc = new AdaptiveHuffmanEncoder(new PipedOutputStream(pipe));
+        AdaptiveHuffmanDecoder dec = new AdaptiveHuffmanDecoder(pipe);
+        byte[] first = "abracadabra".getBytes("US-ASCII");
+        byte[] second = "more text".getBytes("US-ASCII");
+        byte[] buf = new byte[100];
+
+        // The writer stays open, so reading past the flush would block
+        enc.write(first);
+        enc.flush();
+        assertEquals(first.length, dec.read(buf, 0, buf.length));
+        assertArrayEquals(first, Arrays.copyOf(buf, first.length));
+
+        enc.write(second);
+        enc.flush();
+        assertEquals(second.length, dec.read(buf, 0, buf.length));
+        assertArrayEquals(second, Arrays.copyOf(buf, second.length));
+
+        enc.close();
+        assertEquals(-1, dec.read(buf, 0, buf.length));
+    }
+
+    @Test(expected = HuffmanDecodeException.class)
+    public void truncatedStream() throws IOException {
+        byte[] compressed = compress("abracadabra".getBytes("US-ASCII"));
+        decompress(Arrays.copyOf(compressed, compressed.length - 2));
+    }
+}
@@ -0,0 +1,86 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * LongPriorityQueue as a 4-ary min-heap in two parallel arrays, one of
+ * priorities and one of values. Nothing is boxed, and a node's children
+ * sit next to each other, so a sift down reads one or two cache lines a
+ * level over a heap half as deep as a binary one.
+ */
+public class DaryLongPriorityQueue implements LongPriorityQueue {
+    static final int ARITY = 4;
+
+    private long[] priorities;
+    private int[] values;
+    private int N;      // number of entries in the heap
+
+    public DaryLongPriorityQueue() {
+        this(16);
+    }
+
+    /**
+     * @param capacity -- number of entries to make room for up front
+     */
+    public DaryLongPriorityQueue(int capacity) {
+        capacity = Math.max(capacity, 1);
+        priorities = new long[capacity];
+        values = new int[capacity];
+    }
+
+    @Override
+    public void insert(long priority, int value) {
+        if (N == priorities.length) {
+            priorities = Arrays.copyOf(priorities, 2 * N);
+            values = Arrays.copyOf(values, 2 * N);
+        }
+        int hole = N++;
+        // Sift up by moving parents down into the hole
+        while (hole > 0) {
+            int parent = (hole - 1) / ARITY;
+            if (priorities[parent] <= priority) break;
+            priorities[hole] = priorities[parent];
+            values[hole] = values[parent];
+            hole = parent;
+        }
+        priorities[hole] = priority;
+        values[hole] = value;
+    }
+
+    @Override
+    public int delNext() {
+        if (N == 0) throw new NoSuchElementException();
+        int min = values[0];
+        N--;
+        long priority = priorities[N];
+        int value = values[N];
+        int hole = 0;
+        // Sift the last entry down from the root
+        while (true) {
+            int first = ARITY * hole + 1;
+            if (first >= N) break;
+            int child = first;
+            int end = Math.min(first + ARITY, N);
+            for (int c = first + 1; c < end; c++) {
+                if (priorities[c] < priorities[child]) child = c;
+            }
+            if (priorities[child] >= priority) break;
+            priorities[hole] = priorities[child];
+            values[hole] = values[child];
+            hole = child;
+        }
+        priorities[hole] = priority;
+        values[hole] = value;
+        return min;
+    }
+
+    @Override
+    public long minPriority() {
+        if (N == 0) throw new NoSuchElementException();
+        return priorities[0];
+    }
+
+    @Override
+    public int size() {
+        return N;
+    }
+}
@@ -0,0 +1,237 @@
+/**
+ * PriorityQueue as a Fibonacci heap: a list of heap-ordered trees whose
+ * shape is only tidied up when the minimum is removed.
+ *
+ * insert() and meld() just add to the root list, O(1). delNext() moves
+ * the minimum's children to the root list and links roots of equal
+ * degree until no two are left, O(log n) amortized. decreaseKey() cuts
+ * the entry out when it breaks heap order; a parent that loses a second
+ * child is cut too, which keeps trees bushy, for O(1) amortized.
+ */
+public class FibonacciHeap<I extends Comparable<I>> implements PriorityQueue<I> {
+    // Degrees stay below log base 1.618 of the size, under 46 for any int size
+    private static final int MAX_DEGREE = 64;
+
+    /**
+     * A queued item, returned by add() for use with decreaseKey().
+     */
+    public static final class Entry<I> {
+        private I item;
+        private Entry<I> parent, child;
+        private Entry<I> left, right;   // circular list of siblings
+        private int degree;             // number of children
+        private boolean mark;           // lost a child since it became a child itself
+
+        private Entry(I item) {
+            this.item = item;
+            left = right = this;
+        }
+
+        public I item() {
+            return item;
+        }
+    }
+
+    private Entry<I> min;
+    private int N;      // number of items in the heap
+
+    @Override
+    public void insert(I item) {
+        add(item);
+    }
+
+    /**
+     * Inserts an item.
+     *
+     * @return its entry, valid until the item is removed
+     */
+    public Entry<I> add(I item) {
+        Entry<I> e = new Entry<>(item);
+        addRoot(e);
+        N++;
+        return e;
+    }
+
+    @Override
+    public I delNext() {
+        if (min == null) return null;
+        Entry<I> z = min;
+        // Children become roots
+        Entry<I> c = z.child;
+        for (int k = 0; k < z.degree; k++) {
+            Entry<I> next = c.right;
+            c.parent = null;
+            c.mark = false;
+            c.left = c.right = c;
+            addRoot(c);
+            c = next;
+        }
+        z.child = null;
+        // Unlink z from the root list
+        if (z.right == z) {
+            min = null;
+        } else {
+            z.left.right = z.right;
+            z.right.left = z.left;
+            min = z.right;
+            consolidate();
+        }
+        N--;
+        return z.item;
+    }
+
+    /**
+     * @return the item delNext() would return, or null if empty
+     */
+    public I peek() {
+        return (min == null) ? null : min.item;
+    }
+
+    @Override
+    public int size() {
+        return N;
+    }
+
+    /**
+     * Lowers the item of a queued entry.
+     *
+     * @param e -- entry returned by add() on this heap, not yet removed
+     * @param item -- new item, no greater than the current one
+     * @throws IllegalArgumentException if item is greater than the current one
+     */
+    public void decreaseKey(Entry<I> e, I item) {
+        if (item.compareTo(e.item) > 0) throw new IllegalArgumentException("Item is greater than the current one");
+        e.item = item;
+        Entry<I> p = e.parent;
+        if (p != null && item.compareTo(p.item) < 0) {
+            cut(e, p);
+            // Cascading cut: cut marked ancestors, mark the first unmarked one
+            while (p.parent != null) {
+                if (!p.mark) {
+                    p.mark = true;
+                    break;
+                }
+                Entry<I> gp = p.parent;
+                cut(p, gp);
+                p = gp;
+            }
+        }
+        if (item.compareTo(min.item) < 0) min = e;
+    }
+
+    /**
+     * Moves every item of other into this heap, leaving other empty.
+     * Entries of other stay valid and now belong to this heap.
+     */
+    public void meld(FibonacciHeap<I> other) {
+        if (other == this || other.min == null) return;
+        if (min == null) {
+            min = other.min;
+        } else {
+            // Splice the two circular root lists together
+            Entry<I> a = min.right, b = other.min.left;
+            min.right = other.min;
+            other.min.left = min;
+            a.left = b;
+            b.right = a;
+            if (other.min.item.compareTo(min.item) < 0) min = other.min;
+        }
+        N += other.N;
+        other.min = null;
+        other.N = 0;
+    }
+
+    /**
+     * Adds a lone entry to the root list.
+     */
+    private void addRoot(Entry<I> e) {
+        if (min == null) {
+            min = e;
+            return;
+        }
+        e.right = min.right;
+        e.left = min;
+        min.right.left = e;
+        min.right = e;
+        if (e.item.compareTo(min.item) < 0) min = e;
+    }
+
+    /**
+     * Links roots of equal degree until every root has a different
+     * degree, then rebuilds the root list and finds the new minimum.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void consolidate() {
+        int roots = 0;
+        Entry<I> e = min;
+        do {
+            roots++;
+            e = e.right;
+        } while (e != min);
+        Entry<I>[] list = new Entry[roots];
+        for (int i = 0; i < roots; i++) {
+            list[i] = e;
+            e = e.right;
+        }
+
+        Entry<I>[] byDegree = new Entry[MAX_DEGREE];
+        for (Entry<I> x : list) {
+            int d = x.degree;
+            while (byDegree[d] != null) {
+                Entry<I> y = byDegree[d];
+                if (y.item.compareTo(x.item) < 0) {
+                    Entry<I> t = x;
+                    x = y;
+                    y = t;
+                }
+                makeChild(y, x);
+                byDegree[d++] = null;
+            }
+            byDegree[d] = x;
+        }
+
+        min = null;
+        for (Entry<I> x : byDegree) {
+            if (x != null) {
+                x.left = x.right = x;
+                addRoot(x);
+            }
+        }
+    }
+
+    /**
+     * Makes root y a child of root x.
+     */
+    private void makeChild(Entry<I> y, Entry<I> x) {
+        y.parent = x;
+        y.mark = false;
+        if (x.child == null) {
+            x.child = y;
+            y.left = y.right = y;
+        } else {
+            y.right = x.child.right;
+            y.left = x.child;
+            x.child.right.left = y;
+            x.child.right = y;
+        }
+        x.degree++;
+    }
+
+    /**
+     * Moves e from p's children to the root list.
+     */
+    private void cut(Entry<I> e, Entry<I> p) {
+        if (e.right == e) {
+            p.child = null;
+        } else {
+            e.left.right = e.right;
+            e.right.left = e.left;
+            if (p.child == e) p.child = e.right;
+        }
+        p.degree--;
+        e.parent = null;
+        e.mark = false;
+        e.left = e.right = e;
+        addRoot(e);
+    }
+}
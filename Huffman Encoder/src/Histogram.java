@@ -0,0 +1,199 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Symbol counter for building Huffman tables.
+ *
+ * A plain counts[x]++ loop is slow on skewed data: runs of the same
+ * symbol make each increment wait for the store of the one before it.
+ * Here consecutive symbols go to STRIPES separate tables, so neighbouring
+ * increments usually touch different memory, and the tables are summed
+ * at the end of each add(). Large byte arrays can also be counted in
+ * chunks on a ForkJoinPool.
+ */
+public class Histogram {
+    static final int STRIPES = 4;
+    /** Byte arrays at least this long are split into chunks counted in parallel */
+    static final int PARALLEL_THRESHOLD = 1 << 20;
+
+    private final long[] counts;
+    // Striped tables for add(CharSequence), kept zeroed between calls
+    private int[] charStripes;
+
+    /**
+     * A histogram of the 256 byte values.
+     */
+    public Histogram() {
+        this(256);
+    }
+
+    /**
+     * @param symbols -- number of distinct symbols, counted as 0 to symbols - 1
+     */
+    public Histogram(int symbols) {
+        counts = new long[symbols];
+    }
+
+    /**
+     * Counts bytes off to off + len - 1 of data.
+     */
+    public void add(byte[] data, int off, int len) {
+        if (off < 0 || len < 0 || off + len > data.length) throw new IndexOutOfBoundsException();
+        // Stripe k holds the counts of every fourth byte at entries 256 * k to 256 * k + 255.
+        // An int can't overflow: no stripe sees more than len bytes.
+        int[] t = new int[STRIPES * 256];
+        int i = off, end = off + len;
+        for (; i + 3 < end; i += 4) {
+            t[data[i] & 0xff]++;
+            t[256 + (data[i + 1] & 0xff)]++;
+            t[512 + (data[i + 2] & 0xff)]++;
+            t[768 + (data[i + 3] & 0xff)]++;
+        }
+        for (; i < end; i++) t[data[i] & 0xff]++;
+        merge(t, 256);
+    }
+
+    /**
+     * Counts the remaining bytes of buf without moving its position.
+     * Direct and mapped buffers are read in place, without a copy.
+     */
+    public void add(ByteBuffer buf) {
+        if (buf.hasArray()) {
+            add(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+            return;
+        }
+        int[] t = new int[STRIPES * 256];
+        int i = buf.position(), end = buf.limit();
+        for (; i + 3 < end; i += 4) {
+            t[buf.get(i) & 0xff]++;
+            t[256 + (buf.get(i + 1) & 0xff)]++;
+            t[512 + (buf.get(i + 2) & 0xff)]++;
+            t[768 + (buf.get(i + 3) & 0xff)]++;
+        }
+        for (; i < end; i++) t[buf.get(i) & 0xff]++;
+        merge(t, 256);
+    }
+
+    /**
+     * Counts every char of s.
+     *
+     * @throws ArrayIndexOutOfBoundsException if a char is past the last
+     *         symbol, leaving the counts unchanged
+     */
+    public void add(CharSequence s) {
+        int n = counts.length;
+        int end = s.length();
+        if (n <= Character.MAX_VALUE) {
+            for (int i = 0; i < end; i++) {
+                if (s.charAt(i) >= n) throw new ArrayIndexOutOfBoundsException(s.charAt(i));
+            }
+        }
+        if (end < n) {
+            // Merging the stripes would cost more than it saves
+            for (int i = 0; i < end; i++) counts[s.charAt(i)]++;
+            return;
+        }
+        if (charStripes == null) charStripes = new int[STRIPES * n];
+        int[] t = charStripes;
+        int i = 0;
+        for (; i + 3 < end; i += 4) {
+            t[s.charAt(i)]++;
+            t[n + s.charAt(i + 1)]++;
+            t[2 * n + s.charAt(i + 2)]++;
+            t[3 * n + s.charAt(i + 3)]++;
+        }
+        for (; i < end; i++) t[s.charAt(i)]++;
+        merge(t, n);
+        Arrays.fill(t, 0);
+    }
+
+    /**
+     * Adds the counts of another histogram with the same number of symbols.
+     */
+    public void add(Histogram other) {
+        if (other.counts.length != counts.length) throw new IllegalArgumentException("Histograms differ in size");
+        for (int i = 0; i < counts.length; i++) counts[i] += other.counts[i];
+    }
+
+    /**
+     * @return the count of every symbol, as a new array
+     */
+    public long[] counts() {
+        return counts.clone();
+    }
+
+    /**
+     * Adds the count of every symbol to target, which must have at
+     * least as many entries as there are symbols.
+     */
+    public void addTo(long[] target) {
+        for (int i = 0; i < counts.length; i++) target[i] += counts[i];
+    }
+
+    /**
+     * Sets every count back to 0.
+     */
+    public void clear() {
+        Arrays.fill(counts, 0);
+    }
+
+    /**
+     * Adds STRIPES tables of width entries, laid out one after another, to counts[].
+     */
+    private void merge(int[] t, int width) {
+        for (int i = 0; i < width; i++) {
+            counts[i] += (long) t[i] + t[i + width] + t[i + 2 * width] + t[i + 3 * width];
+        }
+    }
+
+    /**
+     * @return byte counts of data
+     */
+    public static long[] count(byte[] data) {
+        Histogram h = new Histogram();
+        h.add(data, 0, data.length);
+        return h.counts();
+    }
+
+    /**
+     * Counts data in chunks of at least PARALLEL_THRESHOLD bytes on pool,
+     * merging the chunk counts at the end. Smaller arrays are counted on
+     * the calling thread.
+     *
+     * @return byte counts of data
+     */
+    public static long[] count(byte[] data, ForkJoinPool pool) {
+        if (data.length < 2 * PARALLEL_THRESHOLD) return count(data);
+        return pool.invoke(new CountTask(data, 0, data.length)).counts();
+    }
+
+    private static class CountTask extends RecursiveTask<Histogram> {
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] data;
+        private final int from, to;
+
+        CountTask(byte[] data, int from, int to) {
+            this.data = data;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Histogram compute() {
+            if (to - from < 2 * PARALLEL_THRESHOLD) {
+                Histogram h = new Histogram();
+                h.add(data, from, to - from);
+                return h;
+            }
+            int mid = (from + to) >>> 1;
+            CountTask right = new CountTask(data, mid, to);
+            right.fork();
+            Histogram h = new CountTask(data, from, mid).compute();
+            h.add(right.join());
+            return h;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class HistogramTests {
+
+    private long[] plainCounts(byte[] data, int off, int len) {
+        long[] counts = new long[256];
+        for(int i = off; i < off + len; i++) {
+            counts[data[i] & 0xff]++;
+        }
+        return counts;
+    }
+
+    private byte[] skewedBytes(int n) {
+        byte[] data = new byte[n];
+        Random RNG = new Random(n);
+        for(int i = 0; i < n; i++) {
+            data[i] = (byte) (RNG.nextInt(256) & RNG.nextInt(256) & RNG.nextInt(256));
+        }
+        return data;
+    }
+
+    @Test
+    public void countsMatchForEveryTailLength() {
+        byte[] data = skewedBytes(1000);
+        for(int off = 0; off < 4; off++) {
+            for(int len = 0; len < 9; len++) {
+                Histogram h = new Histogram();
+                h.add(data, off, len);
+                assertArrayEquals(plainCounts(data, off, len), h.counts());
+            }
+        }
+    }
+
+    @Test
+    public void addsAccumulate() {
+        byte[] data = skewedBytes(10001);
+        Histogram h = new Histogram();
+        h.add(data, 0, 5000);
+        h.add(ByteBuffer.wrap(data, 5000, 3000));
+        ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+        direct.put(data).position(8000);
+        h.add(direct);
+        assertEquals(8000, direct.position());
+        assertArrayEquals(plainCounts(data, 0, data.length), h.counts());
+
+        long[] target = new long[256];
+        target[0] = 5;
+        h.addTo(target);
+        assertEquals(5 + h.counts()[0], target[0]);
+        h.clear();
+        assertArrayEquals(new long[256], h.counts());
+    }
+
+    @Test
+    public void chars() {
+        Histogram h = new Histogram(0x3a4);
+        h.add("a\u03a3b\u03a3\u03a3a");
+        long[] counts = h.counts();
+        assertEquals(2, counts['a']);
+        assertEquals(1, counts['b']);
+        assertEquals(3, counts[0x3a3]);
+    }
+
+    @Test
+    public void charOutOfRange() {
+        Histogram h = new Histogram(256);
+        try {
+            h.add("abc\u0100");
+            fail("\u0100 is past the last symbol");
+        } catch (ArrayIndexOutOfBoundsException expected) {
+        }
+        assertArrayEquals(new long[256], h.counts());
+    }
+
+    @Test
+    public void longCharSequences() {
+        // Longer than the table, so counted in stripes; twice, to reuse them
+        Histogram h = new Histogram(300);
+        StringBuilder sb = new StringBuilder();
+        Random RNG = new Random(5);
+        for(int i = 0; i < 1003; i++) {
+            sb.append((char) (RNG.nextInt(300) & RNG.nextInt(300)));
+        }
+        long[] expected = new long[300];
+        for(int i = 0; i < sb.length(); i++) {
+            expected[sb.charAt(i)] += 2;
+        }
+        h.add(sb);
+        h.add(sb);
+        assertArrayEquals(expected, h.counts());
+    }
+
+    @Test
+    public void parallelCount() {
+        byte[] data = skewedBytes(5 * Histogram.PARALLEL_THRESHOLD + 3);
+        assertArrayEquals(plainCounts(data, 0, data.length), Histogram.count(data, ForkJoinPool.commonPool()));
+    }
+}
@@ -0,0 +1,403 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Block-parallel Huffman container. The input is cut into fixed-size
+ * blocks that are counted, encoded and decoded on a ForkJoinPool.
+ * Blocks are byte aligned and independent of each other, so every
+ * block can be worked on by a different thread.
+ *
+ * Container format, integers big-endian:
+ *      1 byte  -- FORMAT_BLOCKS
+ *      4 bytes -- block size
+ *      1 byte  -- 1 if all blocks share one table, else 0
+ *      shared table only: 4 byte length, then the code lengths as
+ *          written by HuffmanEncoder.writeLengths()
+ *      each block:
+ *          4 bytes -- number of decoded bytes, never 0
+ *          4 bytes -- number of bytes that follow
+ *          own table only: code lengths as written by writeLengths()
+ *          packed codes, padded to a byte
+ *      4 bytes of 0 to mark the end of the blocks
+ *      block index:
+ *          4 bytes -- number of blocks
+ *          each block: 8 byte offset of the block in the container,
+ *              8 byte offset of its first byte in the decoded data
+ *          8 bytes -- total number of decoded bytes
+ *      8 bytes -- offset of the block index
+ *
+ * The index sits at the end so blocks can be written as they finish.
+ * HuffmanBlockReader uses it to decode byte ranges without starting
+ * from the first block.
+ */
+public class HuffmanBlockCompressor {
+    /** Format tag of the container, after the HuffmanEncoder stream formats */
+    static final int FORMAT_BLOCKS = 2;
+    public static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+    /** Largest block whose worst case encoding still fits in an array */
+    public static final int MAX_BLOCK_SIZE = 1 << 30;
+    /** Codes are limited so every block decodes from a small table */
+    static final int MAX_CODE_LENGTH = 15;
+
+    private final int blockSize;
+    private final boolean sharedTable;
+    private final ForkJoinPool pool;
+
+    public HuffmanBlockCompressor() {
+        this(DEFAULT_BLOCK_SIZE, false);
+    }
+
+    /**
+     * Runs the per-block work on the common pool.
+     *
+     * @param blockSize -- number of input bytes per block
+     * @param sharedTable -- true to build one table from the merged block
+     *                    counts, false to give every block its own table
+     */
+    public HuffmanBlockCompressor(int blockSize, boolean sharedTable) {
+        this(blockSize, sharedTable, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param blockSize -- number of input bytes per block
+     * @param sharedTable -- true for one table shared by all blocks
+     * @param pool -- pool that runs the per-block work, not shut down
+     */
+    public HuffmanBlockCompressor(int blockSize, boolean sharedTable, ForkJoinPool pool) {
+        if (blockSize <= 0 || blockSize > MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException("Block size must be between 1 and " + MAX_BLOCK_SIZE);
+        }
+        this.blockSize = blockSize;
+        this.sharedTable = sharedTable;
+        this.pool = pool;
+    }
+
+    /**
+     * Compresses a stream in a single pass. Only possible when every
+     * block has its own table.
+     *
+     * @param in -- bytes to compress, not closed
+     * @param out -- destination of the container, not closed
+     * @return number of container bytes written
+     */
+    public long compress(InputStream in, OutputStream out) throws IOException {
+        if (sharedTable) {
+            throw new IllegalStateException("A shared table needs two passes over the input");
+        }
+        return compressBlocks(in, out, null);
+    }
+
+    /**
+     * @param data -- bytes to compress
+     * @param out -- destination of the container, not closed
+     * @return number of container bytes written
+     */
+    public long compress(byte[] data, OutputStream out) throws IOException {
+        // Already in memory, so the count pass needs no copies into blocks
+        int[] lengths = sharedTable ? codeLengths(Histogram.count(data, pool)) : null;
+        return compressBlocks(new ByteArrayInputStream(data), out, lengths);
+    }
+
+    /**
+     * @param f -- file to compress, read twice for a shared table
+     * @param out -- destination of the container, not closed
+     * @return number of container bytes written
+     */
+    public long compress(File f, OutputStream out) throws IOException {
+        int[] lengths = null;
+        if (sharedTable) {
+            try (InputStream in = new FileInputStream(f)) {
+                lengths = sharedLengths(in);
+            }
+        }
+        try (InputStream in = new FileInputStream(f)) {
+            return compressBlocks(in, out, lengths);
+        }
+    }
+
+    /**
+     * First pass for a shared table: counts every block in parallel and
+     * builds the code lengths from the merged counts.
+     */
+    private int[] sharedLengths(InputStream in) throws IOException {
+        long[] counts = new long[256];
+        List<byte[]> batch;
+        while (!(batch = readBatch(in)).isEmpty()) {
+            List<CountTask> tasks = new ArrayList<>();
+            for (byte[] block : batch) tasks.add(new CountTask(block));
+            for (CountTask t : tasks) pool.execute(t);
+            for (CountTask t : tasks) {
+                long[] blockCounts = t.join();
+                for (int i = 0; i < 256; i++) counts[i] += blockCounts[i];
+            }
+        }
+        return codeLengths(counts);
+    }
+
+    private long compressBlocks(InputStream in, OutputStream out, int[] lengths) throws IOException {
+        DataOutputStream dos = new DataOutputStream(out);
+        long pos = 0;
+        dos.writeByte(FORMAT_BLOCKS);
+        dos.writeInt(blockSize);
+        dos.writeByte(lengths != null ? 1 : 0);
+        pos += 6;
+        if (lengths != null) {
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            BitWriter bw = new BitWriter(header);
+            HuffmanEncoder.writeLengths(bw, lengths);
+            bw.flush();
+            dos.writeInt(header.size());
+            header.writeTo(dos);
+            pos += 4 + header.size();
+        }
+
+        List<Long> offsets = new ArrayList<>();
+        List<Long> starts = new ArrayList<>();
+        long decoded = 0;
+        List<byte[]> batch;
+        while (!(batch = readBatch(in)).isEmpty()) {
+            List<EncodeTask> tasks = new ArrayList<>();
+            for (byte[] block : batch) tasks.add(new EncodeTask(block, lengths));
+            for (EncodeTask t : tasks) pool.execute(t);
+            // Blocks are written in input order as they finish
+            for (int i = 0; i < tasks.size(); i++) {
+                byte[] encoded = tasks.get(i).join();
+                offsets.add(pos);
+                starts.add(decoded);
+                decoded += batch.get(i).length;
+                dos.writeInt(batch.get(i).length);
+                dos.writeInt(encoded.length);
+                dos.write(encoded);
+                pos += 8 + encoded.length;
+            }
+        }
+        dos.writeInt(0);
+        pos += 4;
+
+        long indexOffset = pos;
+        dos.writeInt(offsets.size());
+        for (int i = 0; i < offsets.size(); i++) {
+            dos.writeLong(offsets.get(i));
+            dos.writeLong(starts.get(i));
+        }
+        dos.writeLong(decoded);
+        dos.writeLong(indexOffset);
+        pos += 4 + 16L * offsets.size() + 16;
+        dos.flush();
+        return pos;
+    }
+
+    /**
+     * Decompresses a container, decoding a batch of blocks in parallel
+     * and writing them out in order. Reading stops at the end marker,
+     * the block index isn't needed for a full decode.
+     *
+     * @param in -- container, not closed
+     * @param out -- destination of the decoded bytes, not closed
+     * @return number of bytes decoded
+     */
+    public long decompress(InputStream in, OutputStream out) throws IOException {
+        DataInputStream dis = new DataInputStream(in);
+        try {
+            if (dis.readUnsignedByte() != FORMAT_BLOCKS) { throw new HuffmanParseException(); }
+            int blockSize = dis.readInt();
+            if (blockSize <= 0 || blockSize > MAX_BLOCK_SIZE) { throw new HuffmanParseException(); }
+            int maxEncoded = HuffmanMessageEncoder.maxEncodedLength(blockSize);
+            int[] lengths = null;
+            if (dis.readUnsignedByte() == 1) {
+                int headerLength = dis.readInt();
+                if (headerLength < 0 || headerLength > HuffmanMessageEncoder.MAX_HEADER_BYTES) {
+                    throw new HuffmanParseException();
+                }
+                byte[] header = new byte[headerLength];
+                dis.readFully(header);
+                lengths = HuffmanDecoder.readLengths(new BitReader(new ByteArrayInputStream(header)));
+            }
+            DecodeTable shared = (lengths != null) ? checkedTable(lengths) : null;
+
+            long total = 0;
+            boolean done = false;
+            while (!done) {
+                List<DecodeTask> tasks = new ArrayList<>();
+                while (tasks.size() < batchBlocks()) {
+                    int decodedLength = dis.readInt();
+                    if (decodedLength == 0) {
+                        done = true;
+                        break;
+                    }
+                    int encodedLength = dis.readInt();
+                    // Checked before allocating, so a corrupt length can't ask for a huge array
+                    if (decodedLength < 0 || decodedLength > blockSize
+                            || encodedLength < 0 || encodedLength > maxEncoded) {
+                        throw new HuffmanParseException();
+                    }
+                    byte[] encoded = new byte[encodedLength];
+                    dis.readFully(encoded);
+                    tasks.add(new DecodeTask(encoded, decodedLength, shared));
+                }
+                for (DecodeTask t : tasks) pool.execute(t);
+                for (DecodeTask t : tasks) {
+                    byte[] decoded = t.join();
+                    out.write(decoded);
+                    total += decoded.length;
+                }
+            }
+            out.flush();
+            return total;
+        } catch (EOFException e) {
+            throw new HuffmanDecodeException();
+        }
+    }
+
+    private int batchBlocks() {
+        return 2 * pool.getParallelism();
+    }
+
+    /**
+     * Reads up to batchBlocks() full blocks; only the last may be short.
+     *
+     * @return the blocks read, empty at end of stream
+     */
+    private List<byte[]> readBatch(InputStream in) throws IOException {
+        List<byte[]> batch = new ArrayList<>();
+        while (batch.size() < batchBlocks()) {
+            byte[] block = new byte[blockSize];
+            int filled = 0, r;
+            while (filled < blockSize && (r = in.read(block, filled, blockSize - filled)) > 0) {
+                filled += r;
+            }
+            if (filled == 0) break;
+            if (filled < blockSize) {
+                byte[] last = new byte[filled];
+                System.arraycopy(block, 0, last, 0, filled);
+                batch.add(last);
+                break;
+            }
+            batch.add(block);
+        }
+        return batch;
+    }
+
+    /**
+     * @return length-limited code lengths for the counts
+     */
+    static int[] codeLengths(long[] counts) {
+        HuffmanEncoder he = new HuffmanEncoder();
+        he.setMaxCodeLength(MAX_CODE_LENGTH);
+        he.buildCodes(counts);
+        return he.codeLengths;
+    }
+
+    /**
+     * Builds a decode table, checking first that the lengths are a valid code.
+     */
+    static DecodeTable checkedTable(int[] lengths) {
+        HuffmanDecoder.checkLengths(lengths);
+        return new DecodeTable(HuffmanEncoder.canonicalCodes(lengths), lengths);
+    }
+
+    private static class CountTask extends RecursiveTask<long[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] block;
+
+        CountTask(byte[] block) {
+            this.block = block;
+        }
+
+        @Override
+        protected long[] compute() {
+            return Histogram.count(block);
+        }
+    }
+
+    /**
+     * Encodes one block, with its own table when none is shared.
+     */
+    private static class EncodeTask extends RecursiveTask<byte[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] block;
+        private final int[] lengths;
+
+        EncodeTask(byte[] block, int[] lengths) {
+            this.block = block;
+            this.lengths = lengths;
+        }
+
+        @Override
+        protected byte[] compute() {
+            HuffmanMessageEncoder encoder = new HuffmanMessageEncoder();
+            if (lengths != null) encoder.setTable(lengths);
+            byte[] out = new byte[HuffmanMessageEncoder.maxEncodedLength(block.length)];
+            int written = encoder.encode(block, 0, block.length, out, 0);
+            return Arrays.copyOf(out, written);
+        }
+    }
+
+    /**
+     * Decodes one block, reading its own table when none is shared.
+     */
+    private static class DecodeTask extends RecursiveTask<byte[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] encoded;
+        private final int decodedLength;
+        private final DecodeTable shared;
+
+        DecodeTask(byte[] encoded, int decodedLength, DecodeTable shared) {
+            this.encoded = encoded;
+            this.decodedLength = decodedLength;
+            this.shared = shared;
+        }
+
+        @Override
+        protected byte[] compute() {
+            try {
+                return decodeBlock(encoded, decodedLength, shared);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * @param encoded -- the bytes of one block after its two length fields
+     * @param decodedLength -- number of bytes the block decodes to
+     * @param shared -- the container's table, or null if the block has its own
+     * @return the decoded block
+     */
+    static byte[] decodeBlock(byte[] encoded, int decodedLength, DecodeTable shared) throws IOException {
+        return decodeBlock(encoded, decodedLength, shared, decodedLength);
+    }
+
+    /**
+     * Decodes only the start of a block.
+     *
+     * @param upTo -- number of bytes to decode, at most decodedLength
+     * @return the first upTo bytes of the block
+     */
+    static byte[] decodeBlock(byte[] encoded, int decodedLength, DecodeTable shared, int upTo) throws IOException {
+        if (decodedLength == 0) return new byte[0];
+        BitReader br = new BitReader(encoded, 0, encoded.length);
+        DecodeTable dt = (shared != null) ? shared : checkedTable(HuffmanDecoder.readLengths(br));
+        byte[] decoded = new byte[upTo];
+        for (int i = 0; i < upTo; i++) {
+            decoded[i] = (byte) dt.decode(br);
+        }
+        return decoded;
+    }
+}
@@ -0,0 +1,132 @@
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * Random access into a HuffmanBlockCompressor container. The block index
+ * at the end of the container is loaded once, after which any byte range
+ * is decoded from the blocks that cover it, without touching the blocks
+ * before it.
+ */
+public class HuffmanBlockReader implements Closeable {
+    private final SeekableByteChannel channel;
+    private final long[] blockOffsets;  // where each block starts in the container
+    private final long[] blockStarts;   // where each block starts in the decoded data
+    private final long decodedSize;
+    private final DecodeTable shared;   // null when every block has its own table
+
+    /**
+     * Reads the container header and block index.
+     *
+     * @param channel -- container to read, closed by close()
+     */
+    public HuffmanBlockReader(SeekableByteChannel channel) throws IOException {
+        this.channel = channel;
+        ByteBuffer header = readAt(0, 6);
+        if ((header.get() & 0xff) != HuffmanBlockCompressor.FORMAT_BLOCKS) { throw new HuffmanParseException(); }
+        header.getInt();
+        if (header.get() == 1) {
+            int len = readAt(6, 4).getInt();
+            ByteBuffer lengths = readAt(10, len);
+            shared = HuffmanBlockCompressor.checkedTable(
+                    HuffmanDecoder.readLengths(new BitReader(new ByteArrayInputStream(lengths.array()))));
+        } else {
+            shared = null;
+        }
+
+        long indexOffset = readAt(channel.size() - 8, 8).getLong();
+        int blocks = readAt(indexOffset, 4).getInt();
+        if (blocks < 0) { throw new HuffmanParseException(); }
+        ByteBuffer index = readAt(indexOffset + 4, 16 * blocks + 8);
+        blockOffsets = new long[blocks];
+        blockStarts = new long[blocks];
+        for (int i = 0; i < blocks; i++) {
+            blockOffsets[i] = index.getLong();
+            blockStarts[i] = index.getLong();
+        }
+        decodedSize = index.getLong();
+    }
+
+    /**
+     * @return number of bytes the whole container decodes to
+     */
+    public long size() {
+        return decodedSize;
+    }
+
+    /**
+     * Decodes len bytes starting at decoded offset from. Only the blocks
+     * covering the range are read, and the last one only as far as needed.
+     *
+     * @param from -- offset of the first byte in the decoded data
+     * @param len -- number of bytes wanted
+     * @return the decoded bytes
+     * @throws IndexOutOfBoundsException if the range isn't inside the data
+     */
+    public byte[] decodeRange(long from, int len) throws IOException {
+        if (from < 0 || len < 0 || from + len > decodedSize) throw new IndexOutOfBoundsException();
+        byte[] result = new byte[len];
+        int filled = 0;
+        int block = blockContaining(from);
+        while (filled < len) {
+            long blockStart = blockStarts[block];
+            int skip = (int) (from + filled - blockStart);
+            int upTo = (int) Math.min(blockLength(block), skip + (long) (len - filled));
+            byte[] decoded = decodeBlock(block, upTo);
+            System.arraycopy(decoded, skip, result, filled, upTo - skip);
+            filled += upTo - skip;
+            block++;
+        }
+        return result;
+    }
+
+    /**
+     * Binary search of the decoded-offset checkpoints.
+     *
+     * @return index of the block holding decoded offset pos
+     */
+    private int blockContaining(long pos) {
+        int lo = 0, hi = blockStarts.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (blockStarts[mid] <= pos) lo = mid;
+            else hi = mid - 1;
+        }
+        return lo;
+    }
+
+    private long blockLength(int block) {
+        long end = (block + 1 < blockStarts.length) ? blockStarts[block + 1] : decodedSize;
+        return end - blockStarts[block];
+    }
+
+    private byte[] decodeBlock(int block, int upTo) throws IOException {
+        ByteBuffer lengths = readAt(blockOffsets[block], 8);
+        int decodedLength = lengths.getInt();
+        int encodedLength = lengths.getInt();
+        if (decodedLength != blockLength(block) || encodedLength < 0) { throw new HuffmanParseException(); }
+        byte[] encoded = readAt(blockOffsets[block] + 8, encodedLength).array();
+        return HuffmanBlockCompressor.decodeBlock(encoded, decodedLength, shared, upTo);
+    }
+
+    /**
+     * Reads len bytes at a container offset. Synchronized because the
+     * channel's position is shared.
+     */
+    private synchronized ByteBuffer readAt(long pos, int len) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(len);
+        channel.position(pos);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf) < 0) { throw new HuffmanDecodeException(); }
+        }
+        buf.flip();
+        return buf;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
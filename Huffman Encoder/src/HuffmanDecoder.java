@@ -1,4 +1,7 @@
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 
 class HuffmanParseException extends RuntimeException {
@@ -13,6 +16,242 @@ class HuffmanDecodeException extends RuntimeException {
     }
 }
 
+/**
+ * Buffered reader of packed bits, most significant bit first.
+ * Mirror image of BitWriter. Past the end of the stream the reader
+ * supplies 0 bits for peeking, but consuming them is an error.
+ */
+class BitReader {
+    private final InputStream in;     // null when reading from an array
+    private final byte[] buf;
+    private int pos, limit;
+    private long acc;       // pending bits, low bitCount bits are valid
+    private int bitCount;
+    private int padding;    // how many of the pending bits are past the end
+    private long taken;     // bytes moved from buf into acc
+
+    public BitReader(InputStream in) {
+        this.in = in;
+        buf = new byte[HuffmanEncoder.STREAM_BUFFER_SIZE];
+    }
+
+    /**
+     * Reads bits straight out of an array, without a buffer of its own.
+     *
+     * @param data -- array holding the bits
+     * @param off -- index of the first byte
+     * @param len -- number of bytes
+     */
+    public BitReader(byte[] data, int off, int len) {
+        if (off < 0 || len < 0 || off + len > data.length) throw new IndexOutOfBoundsException();
+        in = null;
+        buf = data;
+        pos = off;
+        limit = off + len;
+    }
+
+    /**
+     * @return the next bit, 0 or 1
+     * @throws HuffmanDecodeException if the stream ends early
+     */
+    public int readBit() throws IOException {
+        return readBits(1);
+    }
+
+    /**
+     * @param n -- number of bits to read, 0 to 32
+     * @return the next n bits, right-aligned
+     * @throws HuffmanDecodeException if the stream ends early
+     */
+    public int readBits(int n) throws IOException {
+        int bits = peekBits(n);
+        skipBits(n);
+        return bits;
+    }
+
+    /**
+     * Looks at the next n bits without consuming them.
+     *
+     * @param n -- number of bits to look at, 0 to 32
+     * @return the next n bits, right-aligned, 0 filled past the end
+     */
+    public int peekBits(int n) throws IOException {
+        if (bitCount < n) refill(n);
+        return (int) ((acc >>> (bitCount - n)) & ((1L << n) - 1));
+    }
+
+    /**
+     * Consumes n bits that were looked at with peekBits().
+     *
+     * @throws HuffmanDecodeException if that goes past the end of the stream
+     */
+    public void skipBits(int n) {
+        bitCount -= n;
+        if (bitCount < padding) { throw new HuffmanDecodeException(); }
+    }
+
+    /**
+     * @return number of bits read or skipped so far
+     */
+    public long bitsConsumed() {
+        return 8 * taken + padding - bitCount;
+    }
+
+    /**
+     * @return number of bits that can be read without touching the
+     *         underlying stream: pending bits plus unread buffered bytes
+     */
+    public long bitsBuffered() {
+        return (bitCount - padding) + 8L * (limit - pos);
+    }
+
+    /**
+     * Skips to the start of the next byte of the stream.
+     */
+    public void alignToByte() {
+        skipBits(bitCount % 8);
+    }
+
+    // Tops the pending bits up to 56 from the buffer, but only reads the
+    // stream while fewer than n bits are pending, so a live stream is
+    // never waited on for bits nobody asked for
+    private void refill(int n) throws IOException {
+        while (bitCount <= 56) {
+            if (pos + 4 <= limit && bitCount <= 32) {
+                acc = (acc << 32) | ((buf[pos] & 0xffL) << 24) | ((buf[pos + 1] & 0xff) << 16)
+                        | ((buf[pos + 2] & 0xff) << 8) | (buf[pos + 3] & 0xff);
+                pos += 4;
+                taken += 4;
+                bitCount += 32;
+            } else if (pos < limit || bitCount < n) {
+                fill();
+            } else {
+                break;
+            }
+        }
+    }
+
+    private void fill() throws IOException {
+        if (pos == limit) {
+            limit = (padding == 0 && in != null) ? in.read(buf, 0, buf.length) : -1;
+            pos = 0;
+            if (limit <= 0) {
+                limit = 0;
+                acc <<= 8;
+                bitCount += 8;
+                padding += 8;
+                return;
+            }
+        }
+        acc = (acc << 8) | (buf[pos++] & 0xff);
+        taken++;
+        bitCount += 8;
+    }
+}
+
+/**
+ * Multi-level lookup table for decoding Huffman codes several bits at
+ * a time. The root table is indexed by the next ROOT_BITS bits of input.
+ * Codes longer than that continue in sub-tables of up to SUB_BITS bits.
+ *
+ * Entries are ints:
+ *      0 -- no code starts with these bits
+ *      positive -- (symbol << 8) | bits of the code still unconsumed at this level
+ *      negative -- ~((offset of sub-table << 4) | sub-table index bits)
+ */
+class DecodeTable {
+    static final int ROOT_BITS = 10;
+    static final int SUB_BITS = 8;
+
+    private int[] table;
+    private int size;
+    private final int rootBits;
+    private final int maxLen;
+    private int singleSymbol = -1;
+
+    /**
+     * @param codes -- code of each symbol, right-aligned
+     * @param lengths -- code length of each symbol, 0 or less if absent
+     */
+    public DecodeTable(long[] codes, int[] lengths) {
+        int max = 0, present = 0, last = 0;
+        for (int i = 0; i < lengths.length; i++) {
+            if (lengths[i] > 0) max = Math.max(max, lengths[i]);
+            if (lengths[i] >= 0) { present++; last = i; }
+        }
+        maxLen = max;
+        // A trie of one leaf has a code of length 0
+        if (present == 1 && max == 0) singleSymbol = last;
+        rootBits = Math.max(1, Math.min(ROOT_BITS, maxLen));
+        table = new int[1 << rootBits];
+        size = table.length;
+        for (int i = 0; i < lengths.length; i++) {
+            if (lengths[i] > 0) insert(i, codes[i], lengths[i]);
+        }
+    }
+
+    private void insert(int sym, long code, int len) {
+        int base = 0, bits = rootBits, depth = 0;
+        while (len > depth + bits) {
+            int idx = (int) ((code >>> (len - depth - bits)) & ((1 << bits) - 1));
+            int e = table[base + idx];
+            if (e == 0) {
+                int sub = Math.min(SUB_BITS, maxLen - depth - bits);
+                e = ~((allocate(1 << sub) << 4) | sub);
+                table[base + idx] = e;
+            } else if (e > 0) {
+                // a shorter code is a prefix of this one
+                throw new HuffmanParseException();
+            }
+            depth += bits;
+            base = ~e >>> 4;
+            bits = ~e & 15;
+        }
+        // Every index that starts with the code's remaining bits decodes to sym
+        int fill = depth + bits - len;
+        int first = (int) (code & ((1L << (len - depth)) - 1)) << fill;
+        for (int i = 0; i < (1 << fill); i++) {
+            if (table[base + first + i] != 0) { throw new HuffmanParseException(); }
+            table[base + first + i] = (sym << 8) | (len - depth);
+        }
+    }
+
+    private int allocate(int n) {
+        if (size + n > table.length) {
+            table = Arrays.copyOf(table, Math.max(table.length * 2, size + n));
+        }
+        size += n;
+        return size - n;
+    }
+
+    /**
+     * Decodes one symbol, consuming exactly its code's bits.
+     *
+     * @return the decoded symbol
+     * @throws HuffmanDecodeException on bits that don't form a code
+     */
+    public int decode(BitReader br) throws IOException {
+        if (singleSymbol >= 0) return singleSymbol;
+        int bits = rootBits;
+        int e = table[br.peekBits(bits)];
+        while (e < 0) {
+            br.skipBits(bits);
+            bits = ~e & 15;
+            e = table[(~e >>> 4) + br.peekBits(bits)];
+        }
+        if (e == 0) { throw new HuffmanDecodeException(); }
+        br.skipBits(e & 0xff);
+        return e >>> 8;
+    }
+
+    /**
+     * @return number of table entries, for sizing checks
+     */
+    public int size() {
+        return size;
+    }
+}
+
 public class HuffmanDecoder {
 
     private class Node implements Comparable<Node>{
@@ -39,31 +278,70 @@ public class HuffmanDecoder {
     }
 
     private Node root;
+    // Code lengths when the tree came from canonical lengths, otherwise null
+    private int[] lengths;
+    // Whether the table came from a dictionary rather than being parsed
+    private boolean fromDictionary;
+    private HuffmanMetricsListener listener;
+    // Input and position of parseTree()
+    private String treeText;
+    private int treePos;
 
 
     public HuffmanDecoder() {
         root = null;
     }
 
+    /**
+     * Decodes text encoded with a dictionary, so no trie or lengths
+     * need to be parsed.
+     *
+     * @param id -- id of a registered HuffmanDictionary
+     */
+    public void setDictionary(int id) {
+        setDictionary(HuffmanDictionary.get(id));
+    }
+
+    /**
+     * @param d -- dictionary the text was encoded with
+     */
+    public void setDictionary(HuffmanDictionary d) {
+        lengths = d.lengths;
+        fromDictionary = true;
+        // Built by decode() when needed
+        root = null;
+    }
+
+    /**
+     * @param listener -- told about every decode() and decompress(), or null for none
+     */
+    public void setMetricsListener(HuffmanMetricsListener listener) {
+        this.listener = listener;
+    }
+
     public Boolean parseTree(String encTree) {
-        ArrayList<String> encodedTree = new ArrayList<String>(Arrays.asList(encTree.split("")));
-        root = parseTreeHelper(encodedTree);
-        if(encodedTree.size() != 0) { throw new HuffmanParseException(); }
+        fromDictionary = false;
+        treeText = encTree;
+        treePos = 0;
+        root = parseTreeHelper();
+        lengths = null;
+        if(treePos != encTree.length()) { throw new HuffmanParseException(); }
         return true;
     }
 
-    private Node parseTreeHelper(ArrayList<String> encodedTree)  {
-        String bit = encodedTree.remove(0);
-        if(bit.compareTo("0") == 0 ) {
+    private Node parseTreeHelper()  {
+        if(treePos >= treeText.length()) { throw new HuffmanParseException(); }
+        char bit = treeText.charAt(treePos++);
+        if(bit == '0') {
             // interior node, so recurse / link children
             Node newbie = new Node(null, 0);
-            newbie.left = parseTreeHelper(encodedTree);
-            newbie.right = parseTreeHelper(encodedTree);
+            newbie.left = parseTreeHelper();
+            newbie.right = parseTreeHelper();
             return newbie;
         }
-        else if(bit.compareTo("1") == 0) {
-            bit = encodedTree.remove(0);
-            Node newbie = new Node(bit.charAt(0), 0);
+        else if(bit == '1') {
+            if(treePos >= treeText.length()) { throw new HuffmanParseException(); }
+            Node newbie = new Node(treeText.charAt(treePos++), 0);
             return newbie;
         }
         else {
@@ -71,7 +349,109 @@ public class HuffmanDecoder {
         }
     }
 
+    /**
+     * Parses the canonical header from HuffmanEncoder.getEncodedLengths()
+     * and rebuilds the trie the canonical codes describe.
+     *
+     * @param encLengths -- pairs of symbol and code length chars
+     * @return true once parsed
+     */
+    public Boolean parseLengths(String encLengths) {
+        if(encLengths.length() % 2 != 0) { throw new HuffmanParseException(); }
+        char max = 0;
+        for(int i = 0; i < encLengths.length(); i += 2) {
+            if(encLengths.charAt(i) > max) max = encLengths.charAt(i);
+        }
+        int[] lens = new int[Math.max(256, max + 1)];
+        Arrays.fill(lens, -1);
+        for(int i = 0; i < encLengths.length(); i += 2) {
+            char c = encLengths.charAt(i);
+            int len = encLengths.charAt(i + 1);
+            if(c >= lens.length || lens[c] >= 0 || len > 64) { throw new HuffmanParseException(); }
+            lens[c] = len;
+        }
+        root = trieFromLengths(lens);
+        lengths = lens;
+        fromDictionary = false;
+        return true;
+    }
+
+    /**
+     * Builds the trie for canonical codes of the given lengths, checking
+     * that they form a complete prefix code.
+     */
+    private Node trieFromLengths(int[] lens) {
+        long[] codes = HuffmanEncoder.canonicalCodes(lens);
+        Node top = new Node(null, 0);
+        int present = 0;
+        for(int i = 0; i < lens.length; i++) {
+            if(lens[i] < 0) continue;
+            if(lens[i] > 64) { throw new HuffmanParseException(); }
+            present++;
+            if(lens[i] == 0) {
+                top = new Node((char) i, 0);
+                continue;
+            }
+            Node curr = top;
+            for(int b = lens[i] - 1; b >= 0; b--) {
+                if(curr.c != null) { throw new HuffmanParseException(); }
+                boolean right = ((codes[i] >>> b) & 1) == 1;
+                Node next = right ? curr.right : curr.left;
+                if(next == null) {
+                    next = (b == 0) ? new Node((char) i, 0) : new Node(null, 0);
+                    if(right) curr.right = next;
+                    else curr.left = next;
+                } else if(b == 0) {
+                    throw new HuffmanParseException();
+                }
+                curr = next;
+            }
+        }
+        if(present == 0 || (top.c != null && present > 1) || !complete(top)) { throw new HuffmanParseException(); }
+        return top;
+    }
+
+    /**
+     * @throws HuffmanParseException unless the lengths describe a complete prefix code
+     */
+    static void checkLengths(int[] lens) {
+        new HuffmanDecoder().trieFromLengths(lens);
+    }
+
+    private boolean complete(Node tree) {
+        if(tree == null) return false;
+        if(tree.c != null) return true;
+        return complete(tree.left) && complete(tree.right);
+    }
+
+    /**
+     * Reads canonical code lengths written by HuffmanEncoder.writeLengths().
+     */
+    static int[] readLengths(BitReader br) throws IOException {
+        int w = br.readBits(3);
+        boolean dense = br.readBit() == 1;
+        int[] lens = new int[256];
+        Arrays.fill(lens, -1);
+        if(dense) {
+            boolean[] present = new boolean[256];
+            for(int i = 0; i < 256; i++) present[i] = br.readBit() == 1;
+            for(int i = 0; i < 256; i++) {
+                if(present[i]) lens[i] = br.readBits(w);
+            }
+        } else {
+            int n = br.readBits(9);
+            for(int i = 0; i < n; i++) {
+                int c = br.readBits(8);
+                if(lens[c] >= 0) { throw new HuffmanParseException(); }
+                lens[c] = br.readBits(w);
+            }
+        }
+        return lens;
+    }
+
     public String decode(String s) {
+        long start = System.nanoTime();
+        if(root == null && lengths != null) root = trieFromLengths(lengths);
         StringBuilder output = new StringBuilder();
         Node curr = root;
         for(char c : s.toCharArray()) {
@@ -94,16 +474,173 @@ public class HuffmanDecoder {
             throw new HuffmanDecodeException();
         }
 
+        if (listener != null) {
+            listener.decoded((s.length() + 7) / 8, output.length(), System.nanoTime() - start, fromDictionary);
+        }
         return output.toString();
     }
 
+    /**
+     * Decompresses a stream written by HuffmanEncoder.compress().
+     *
+     * @param in -- compressed stream, not closed
+     * @param out -- destination of the decoded bytes, not closed
+     * @return number of bytes decoded
+     */
+    public long decompress(InputStream in, OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        BitReader br = new BitReader(in);
+        int format = br.readBits(8);
+        long total;
+        DecodeTable dt;
+        if (format == HuffmanEncoder.FORMAT_DICTIONARY) {
+            HuffmanDictionary d = HuffmanDictionary.lookup(readVarLong(br));
+            if (d == null) { throw new HuffmanParseException(); }
+            total = readVarLong(br);
+            setDictionary(d);
+            dt = d.decodeTable();
+        } else if (format == HuffmanEncoder.FORMAT_TREE || format == HuffmanEncoder.FORMAT_CANONICAL) {
+            total = ((long) br.readBits(32) << 32) | (br.readBits(32) & 0xffffffffL);
+            fromDictionary = false;
+            // An empty stream has no table
+            dt = (total == 0) ? null : readTable(br, format);
+        } else {
+            throw new HuffmanParseException();
+        }
+
+        byte[] buf = new byte[HuffmanEncoder.STREAM_BUFFER_SIZE];
+        int pos = 0;
+        for (long i = 0; i < total; i++) {
+            buf[pos++] = (byte) dt.decode(br);
+            if (pos == buf.length) {
+                out.write(buf, 0, pos);
+                pos = 0;
+            }
+        }
+        out.write(buf, 0, pos);
+        out.flush();
+        if (listener != null) {
+            listener.decoded((br.bitsConsumed() + 7) / 8, total, System.nanoTime() - start, fromDictionary);
+        }
+        return total;
+    }
+
+    /**
+     * Reads the trie or code lengths of a FORMAT_TREE or FORMAT_CANONICAL
+     * header and builds the decode table for them.
+     */
+    private DecodeTable readTable(BitReader br, int format) throws IOException {
+        if (format == HuffmanEncoder.FORMAT_CANONICAL) {
+            // The table comes straight from the lengths, the trie only
+            // checks that they form a valid code
+            int[] lens = readLengths(br);
+            root = trieFromLengths(lens);
+            lengths = lens;
+            return new DecodeTable(HuffmanEncoder.canonicalCodes(lens), lens);
+        }
+        root = readTrie(br);
+        lengths = null;
+        return decodeTable();
+    }
+
+    /**
+     * Reads a number written by HuffmanEncoder.writeVarLong().
+     */
+    static long readVarLong(BitReader br) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = br.readBits(8);
+            v |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                if (v < 0) { throw new HuffmanParseException(); }
+                return v;
+            }
+        }
+        throw new HuffmanParseException();
+    }
+
+    /**
+     * Reads a trie written in pre-order as packed bits.
+     */
+    private Node readTrie(BitReader br) throws IOException {
+        if (br.readBit() == 0) {
+            Node newbie = new Node(null, 0);
+            newbie.left = readTrie(br);
+            newbie.right = readTrie(br);
+            return newbie;
+        }
+        return new Node((char) br.readBits(8), 0);
+    }
+
+    /**
+     * Builds a lookup table from the parsed trie, so symbols can be
+     * decoded a whole code at a time instead of one bit at a time.
+     *
+     * @return table for the current trie
+     */
+    DecodeTable decodeTable() {
+        int size = alphabetSize();
+        long[] codes = new long[size];
+        int[] lengths = new int[size];
+        Arrays.fill(lengths, -1);
+        codeHelper(root, 0, 0, codes, lengths);
+        return new DecodeTable(codes, lengths);
+    }
+
+    private void codeHelper(Node tree, long code, int len, long[] codes, int[] lengths) {
+        if(tree.c != null) {
+            codes[tree.c] = code;
+            lengths[tree.c] = len;
+            return;
+        }
+        if(len == 64) { throw new HuffmanParseException(); }
+        codeHelper(tree.left, code << 1, len + 1, codes, lengths);
+        codeHelper(tree.right, (code << 1) | 1, len + 1, codes, lengths);
+    }
+
     public String[] getBitStrings() {
+        String[] bitStrings = new String [alphabetSize()];
+        if(lengths != null) {
+            // canonical codes follow from the lengths alone
+            long[] codes = HuffmanEncoder.canonicalCodes(lengths);
+            for(int i = 0; i < lengths.length; i++) {
+                if(lengths[i] >= 0) bitStrings[i] = HuffmanEncoder.bitString(codes[i], lengths[i]);
+            }
+            return bitStrings;
+        }
         String bs = "";
-        String[] bitStrings = new String [256];;
         bitStringHelper(bs, root, bitStrings);
         return bitStrings;
     }
 
+    /**
+     * @return 256, or one more than the largest symbol if that is bigger
+     */
+    private int alphabetSize() {
+        if(lengths != null) return lengths.length;
+        return Math.max(256, maxSymbol(root) + 1);
+    }
+
+    private int maxSymbol(Node tree) {
+        if(tree == null) return -1;
+        if(tree.c != null) return tree.c;
+        return Math.max(maxSymbol(tree.left), maxSymbol(tree.right));
+    }
+
+    /**
+     * Byte mode counterpart of HuffmanEncoder.encode(byte[]).
+     *
+     * @param s -- encoded text of '0's and '1's
+     * @return the decoded bytes
+     */
+    public byte[] decodeBytes(String s) {
+        String text = decode(s);
+        for(int i = 0; i < text.length(); i++) {
+            if(text.charAt(i) > 255) { throw new HuffmanDecodeException(); }
+        }
+        return text.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
     private void bitStringHelper(String bs, Node tree, String[] bitStrings) {
         if(tree.c != null) {
             bitStrings[tree.c] = bs;
@@ -0,0 +1,213 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A fixed Huffman table trained ahead of time from sample data, for
+ * messages too short to pay for a table of their own. Encoder and
+ * decoder agree on the table by its id, so nothing about the code is
+ * sent and nothing is built per message.
+ *
+ * Training adds 1 to the count of every byte value, so the table has a
+ * code for every byte and can encode any message, not only ones that
+ * look like the samples. Codes are limited to MAX_CODE_LENGTH bits so
+ * HuffmanMessageEncoder can use the table too.
+ *
+ * Dictionary file format: the id as a 4 byte big-endian int, then the
+ * code lengths as written by HuffmanEncoder.writeLengths().
+ *
+ * Usage:
+ *      HuffmanDictionary.load(file);           // once, on both sides
+ *      encoder.setDictionary(id);              // HuffmanEncoder or HuffmanDecoder
+ *      messageEncoder.setDictionary(HuffmanDictionary.get(id));
+ */
+public class HuffmanDictionary {
+    static final int MAX_CODE_LENGTH = HuffmanMessageEncoder.MAX_CODE_LENGTH;
+
+    private static final ConcurrentMap<Integer, HuffmanDictionary> registry = new ConcurrentHashMap<>();
+
+    private final int id;
+    // Shared with encoders and decoders using the dictionary, never modified
+    final int[] lengths;
+    final long[] codes;
+    private final DecodeTable table;
+    private final String[] bitStrings;
+
+    /**
+     * @param id -- number identifying the dictionary, 0 or more
+     * @param lengths -- code length of each of the 256 byte values
+     * @throws IllegalArgumentException unless every byte value has a code
+     *         of 1 to MAX_CODE_LENGTH bits and the codes are complete
+     */
+    public HuffmanDictionary(int id, int[] lengths) {
+        if (id < 0) throw new IllegalArgumentException("Dictionary id must not be negative");
+        if (lengths.length != 256) throw new IllegalArgumentException("Need a length for each of 256 byte values");
+        for (int len : lengths) {
+            if (len < 1 || len > MAX_CODE_LENGTH) {
+                throw new IllegalArgumentException("Every byte value needs a code of 1 to " + MAX_CODE_LENGTH + " bits");
+            }
+        }
+        try {
+            HuffmanDecoder.checkLengths(lengths);
+        } catch (HuffmanParseException e) {
+            throw new IllegalArgumentException("Code lengths don't form a complete prefix code");
+        }
+        this.id = id;
+        this.lengths = lengths.clone();
+        codes = HuffmanEncoder.canonicalCodes(this.lengths);
+        table = new DecodeTable(codes, this.lengths);
+        bitStrings = new String[256];
+        for (int i = 0; i < 256; i++) bitStrings[i] = HuffmanEncoder.bitString(codes[i], this.lengths[i]);
+    }
+
+    /**
+     * Builds a dictionary from the byte counts of sample messages.
+     *
+     * @param id -- number identifying the dictionary
+     * @param samples -- messages typical of the traffic to compress
+     * @return the trained dictionary, not yet registered
+     */
+    public static HuffmanDictionary train(int id, Iterable<byte[]> samples) {
+        Histogram h = new Histogram();
+        for (byte[] sample : samples) h.add(sample, 0, sample.length);
+        long[] counts = h.counts();
+        for (int i = 0; i < 256; i++) counts[i]++;
+        HuffmanEncoder he = new HuffmanEncoder();
+        he.setMaxCodeLength(MAX_CODE_LENGTH);
+        he.buildCodes(counts);
+        return new HuffmanDictionary(id, he.codeLengths);
+    }
+
+    public int id() {
+        return id;
+    }
+
+    /**
+     * @return code length of each byte value
+     */
+    public int[] lengths() {
+        return lengths.clone();
+    }
+
+    /**
+     * Writes the dictionary in the dictionary file format.
+     *
+     * @param out -- destination, not closed
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream dos = new DataOutputStream(out);
+        dos.writeInt(id);
+        BitWriter bw = new BitWriter(dos);
+        HuffmanEncoder.writeLengths(bw, lengths);
+        bw.flush();
+    }
+
+    /**
+     * Reads a dictionary written by write().
+     *
+     * @param in -- source, read up to the end of the dictionary but not closed
+     * @throws HuffmanParseException if it isn't a valid dictionary
+     */
+    public static HuffmanDictionary read(InputStream in) throws IOException {
+        final DataInputStream dis = new DataInputStream(in);
+        int id;
+        try {
+            id = dis.readInt();
+        } catch (EOFException e) {
+            throw new HuffmanParseException();
+        }
+        // Lengths headers are byte aligned and at most a few hundred bytes; read
+        // one byte at a time so nothing after the dictionary is consumed
+        BitReader br = new BitReader(new InputStream() {
+            @Override
+            public int read() throws IOException {
+                return dis.read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) return 0;
+                int c = dis.read();
+                if (c < 0) return -1;
+                b[off] = (byte) c;
+                return 1;
+            }
+        });
+        try {
+            return new HuffmanDictionary(id, HuffmanDecoder.readLengths(br));
+        } catch (IllegalArgumentException | HuffmanDecodeException e) {
+            throw new HuffmanParseException();
+        }
+    }
+
+    /**
+     * Makes the dictionary available by id.
+     *
+     * @throws IllegalArgumentException if a different dictionary already has its id
+     */
+    public static void register(HuffmanDictionary d) {
+        HuffmanDictionary old = registry.putIfAbsent(d.id, d);
+        if (old != null && !Arrays.equals(old.lengths, d.lengths)) {
+            throw new IllegalArgumentException("Dictionary " + d.id + " is already registered");
+        }
+    }
+
+    /**
+     * Reads a dictionary file and registers it.
+     *
+     * @return the loaded dictionary
+     */
+    public static HuffmanDictionary load(File f) throws IOException {
+        try (InputStream in = new FileInputStream(f)) {
+            HuffmanDictionary d = read(in);
+            register(d);
+            return d;
+        }
+    }
+
+    /**
+     * @return the registered dictionary with this id
+     * @throws IllegalArgumentException if there is none
+     */
+    public static HuffmanDictionary get(int id) {
+        HuffmanDictionary d = registry.get(id);
+        if (d == null) throw new IllegalArgumentException("No dictionary with id " + id);
+        return d;
+    }
+
+    /**
+     * @return the registered dictionary with this id, or null
+     */
+    static HuffmanDictionary lookup(long id) {
+        if (id < 0 || id > Integer.MAX_VALUE) return null;
+        return registry.get((int) id);
+    }
+
+    /**
+     * Decodes a message written by a HuffmanMessageEncoder using this
+     * dictionary. Messages carry no length, so it must be known.
+     *
+     * @param encoded -- the encoded message
+     * @param decodedLength -- number of bytes in the message
+     * @return the message
+     */
+    public byte[] decodeMessage(byte[] encoded, int decodedLength) throws IOException {
+        return HuffmanBlockCompressor.decodeBlock(encoded, decodedLength, table);
+    }
+
+    DecodeTable decodeTable() {
+        return table;
+    }
+
+    String[] bitStrings() {
+        return bitStrings;
+    }
+}
@@ -0,0 +1,159 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class HuffmanDictionaryTests {
+
+    private List<byte[]> samples() throws IOException {
+        List<byte[]> samples = new ArrayList<>();
+        for(int i = 0; i < 200; i++) {
+            samples.add(("{\"id\":" + i + ",\"op\":\"get\",\"key\":\"user-" + (i * 7) + "\"}").getBytes("US-ASCII"));
+        }
+        return samples;
+    }
+
+    private HuffmanDictionary registered(int id) throws IOException {
+        HuffmanDictionary d = HuffmanDictionary.train(id, samples());
+        HuffmanDictionary.register(d);
+        return d;
+    }
+
+    @Test
+    public void trainedTableCoversEveryByte() throws IOException {
+        HuffmanDictionary d = HuffmanDictionary.train(1, samples());
+        int[] lengths = d.lengths();
+        for(int len : lengths) {
+            assertTrue(len >= 1 && len <= HuffmanDictionary.MAX_CODE_LENGTH);
+        }
+        // Common sample bytes get shorter codes than bytes never seen
+        assertTrue(lengths['"'] < lengths[0]);
+    }
+
+    @Test
+    public void writeAndRead() throws IOException {
+        HuffmanDictionary d = HuffmanDictionary.train(77, samples());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        d.write(out);
+        out.write(42);
+        ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+        HuffmanDictionary read = HuffmanDictionary.read(in);
+        assertEquals(77, read.id());
+        assertArrayEquals(d.lengths(), read.lengths());
+        // Nothing past the dictionary was consumed
+        assertEquals(42, in.read());
+    }
+
+    @Test(expected = HuffmanParseException.class)
+    public void readTruncated() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HuffmanDictionary.train(78, samples()).write(out);
+        HuffmanDictionary.read(new ByteArrayInputStream(Arrays.copyOf(out.toByteArray(), 6)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void incompleteCode() {
+        int[] lengths = new int[256];
+        Arrays.fill(lengths, 9);
+        new HuffmanDictionary(1, lengths);
+    }
+
+    @Test
+    public void registry() throws IOException {
+        HuffmanDictionary d = registered(200);
+        assertSame(d, HuffmanDictionary.get(200));
+        // The same table again is fine
+        HuffmanDictionary.register(HuffmanDictionary.train(200, samples()));
+        int[] other = new int[256];
+        Arrays.fill(other, 8);
+        try {
+            HuffmanDictionary.register(new HuffmanDictionary(200, other));
+            fail("registered a different table under a taken id");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            HuffmanDictionary.get(201);
+            fail("found a dictionary that was never registered");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void stringApi() throws IOException {
+        registered(300);
+        String message = "{\"id\":9001,\"op\":\"put\",\"key\":\"user-3\"}";
+        HuffmanEncoder he = new HuffmanEncoder();
+        he.setDictionary(300);
+        he.encode(message);
+        HuffmanDecoder hd = new HuffmanDecoder();
+        hd.setDictionary(300);
+        assertEquals(message, hd.decode(he.getEncodedText()));
+        assertEquals(he.getBitStrings()['"'], hd.getBitStrings()['"']);
+
+        // The trie can still be sent to a decoder without the dictionary
+        HuffmanDecoder plain = new HuffmanDecoder();
+        plain.parseTree(he.getEncodedTree());
+        assertEquals(message, plain.decode(he.getEncodedText()));
+
+        // Bytes missing from the samples still have codes
+        he.encode("\u0000\u00ff~");
+        assertEquals("\u0000\u00ff~", hd.decode(he.getEncodedText()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void stringApiOnlyBytes() throws IOException {
+        HuffmanEncoder he = new HuffmanEncoder();
+        he.setDictionary(registered(301));
+        he.encode("\u0100");
+    }
+
+    @Test
+    public void streamHeaderIsShort() throws IOException {
+        registered(302);
+        byte[] message = "{\"id\":12,\"op\":\"get\",\"key\":\"user-84\"}".getBytes("US-ASCII");
+        HuffmanEncoder he = new HuffmanEncoder();
+        he.setDictionary(302);
+        he.count(new ByteArrayInputStream(message));
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        he.compress(new ByteArrayInputStream(message), compressed);
+
+        // format byte, two byte id, one byte length, then the codes
+        int bits = 0;
+        for(byte b : message) {
+            bits += HuffmanDictionary.get(302).lengths()[b & 0xff];
+        }
+        assertEquals(4 + (bits + 7) / 8, compressed.size());
+        assertTrue(compressed.size() < message.length);
+
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        new HuffmanDecoder().decompress(new ByteArrayInputStream(compressed.toByteArray()), decoded);
+        assertArrayEquals(message, decoded.toByteArray());
+    }
+
+    @Test(expected = HuffmanParseException.class)
+    public void streamUnknownDictionary() throws IOException {
+        byte[] stream = {(byte) HuffmanEncoder.FORMAT_DICTIONARY, (byte) 0x80, (byte) 0x80, 0x7f, 0};
+        new HuffmanDecoder().decompress(new ByteArrayInputStream(stream), new ByteArrayOutputStream());
+    }
+
+    @Test
+    public void messageEncoder() throws IOException {
+        HuffmanDictionary d = registered(303);
+        HuffmanMessageEncoder hme = new HuffmanMessageEncoder();
+        hme.setDictionary(d);
+        byte[] dst = new byte[HuffmanMessageEncoder.maxEncodedLength(100)];
+        for(byte[] message : samples()) {
+            int n = hme.encode(message, 0, message.length, dst, 0);
+            assertTrue(n < message.length);
+            assertArrayEquals(message, d.decodeMessage(Arrays.copyOf(dst, n), message.length));
+        }
+    }
+}
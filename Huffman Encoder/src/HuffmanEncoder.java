@@ -1,9 +1,53 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
 public class HuffmanEncoder {
+    /** Format tag written as the first byte of a compressed stream */
+    static final int FORMAT_TREE = 0;
+    /** Format tag for a stream whose header holds only canonical code lengths */
+    static final int FORMAT_CANONICAL = 1;
+    /** Format tag for a stream coded with a HuffmanDictionary, named by its id in the header */
+    static final int FORMAT_DICTIONARY = 4;
+    /** Size of the read buffer used by the streaming passes */
+    static final int STREAM_BUFFER_SIZE = 1 << 16;
+    /** Largest piece of an input file mapped at once */
+    static final int MAP_CHUNK_SIZE = 1 << 28;
+
     Node trie;
     String originalString;
     String encodedTrie = "";
+    // Result of getEncodedText(), kept until the next encode()
+    String encodedText;
 
     String[] bitStrings = new String[256];
+    // Symbol counts for the current input, indexed by byte/char value
+    long[] counts = new long[256];
+    // Packed codes used by the streaming compressor, right-aligned in each long
+    long[] codes;
+    int[] codeLengths;
+    // When set, codes are assigned canonically from their lengths
+    boolean canonical = false;
+    // Longest code allowed, or 0 for no limit
+    int maxCodeLength = 0;
+    // Fixed codes to use instead of building them from the input, or null
+    HuffmanDictionary dictionary;
+    HuffmanMetricsListener listener;
+    // Queue used to build the trie
+    PriorityQueueBackend queueBackend = PriorityQueueBackend.BINARY;
     /**
      * You can use this node implementation for building your Huffman tree.
      * Feel free to change it, but be sure to update at least compareTo
@@ -12,9 +56,9 @@ public class HuffmanEncoder {
     private class Node implements Comparable<Node>{
         public Node left, right;
         public Character c;
-        public int count;
+        public long count;
 
-        public Node(Character c, int count) {
+        public Node(Character c, long count) {
             this.c = c;
             this.count = count;
             left = right = null;
@@ -22,7 +66,7 @@ public class HuffmanEncoder {
 
         @Override
         public int compareTo(Node o) {
-            return count - o.count;
+            return Long.compare(count, o.count);
         }
 
         @Override
@@ -35,21 +79,103 @@ public class HuffmanEncoder {
     public HuffmanEncoder() {
     }
 
+    /**
+     * Switches between codes read off the trie (the default) and
+     * canonical codes derived from the code lengths alone. Canonical
+     * codes can be sent with getEncodedLengths() instead of the trie.
+     *
+     * @param canonical -- true for canonical codes
+     */
+    public void setCanonical(boolean canonical) {
+        this.canonical = canonical;
+    }
+
+    /**
+     * Caps the length of every code. When the trie would be deeper than
+     * the cap, optimal lengths within it are found with package-merge.
+     * Limited lengths no longer match the trie built from the counts, so
+     * a limit implies canonical codes.
+     *
+     * @param maxLen -- longest code allowed, 1 to 64, or 0 for no limit
+     */
+    public void setMaxCodeLength(int maxLen) {
+        if (maxLen < 0 || maxLen > 64) throw new IllegalArgumentException("Code length limit must be 0 to 64");
+        maxCodeLength = maxLen;
+    }
+
+    /**
+     * Encodes with the codes of a registered dictionary instead of
+     * building them from the input. The trie and code lengths then don't
+     * need to be sent; a HuffmanDecoder set to the same dictionary
+     * decodes the text. Input is limited to byte values.
+     *
+     * @param id -- id of a registered HuffmanDictionary
+     */
+    public void setDictionary(int id) {
+        setDictionary(HuffmanDictionary.get(id));
+    }
+
+    /**
+     * @param d -- dictionary to encode with, or null to build codes from the input again
+     */
+    public void setDictionary(HuffmanDictionary d) {
+        dictionary = d;
+    }
+
+    /**
+     * @param listener -- told about every encode() and compress(), or null for none
+     */
+    public void setMetricsListener(HuffmanMetricsListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @param backend -- priority queue buildTrie() merges nodes with
+     */
+    public void setQueueBackend(PriorityQueueBackend backend) {
+        queueBackend = backend;
+    }
+
+    /**
+     * @return true if codes are assigned from their lengths
+     */
+    boolean useCanonical() {
+        return canonical || maxCodeLength > 0 || dictionary != null;
+    }
+
     public Node buildTrie(String s) {
-        MinHeapPriorityQueue<Node> charPQ = new MinHeapPriorityQueue<>();
-        // Converts char to index and increments the value
-        int[] counts = new int[256];
+        // The table covers every char in s, and at least all byte values
+        char max = 0;
         for(int i = 0; i < s.length(); i++) {
-            counts[s.charAt(i)]++;
+            if (s.charAt(i) > max) max = s.charAt(i);
         }
-        // Goes through counts[] and inserts chars to charPQ
-        int charsRead = 0;
-        for(int j = 0; j < counts.length && charsRead < s.length(); j++) {
+        Histogram h = new Histogram(Math.max(256, max + 1));
+        h.add(s);
+        counts = h.counts();
+        return buildTrie(counts);
+    }
+
+    /**
+     * Builds a Huffman trie from a table of symbol counts.
+     *
+     * @param counts -- number of occurrences of each symbol, indexed by value
+     * @return root of the trie, or null if every count is zero
+     */
+    public Node buildTrie(long[] counts) {
+        // Goes through counts[] and puts the chars into charPQ
+        ArrayList<Node> leaves = new ArrayList<>();
+        for(int j = 0; j < counts.length; j++) {
             if (counts[j] != 0) {
-                charPQ.insert(new Node((char)j, counts[j]));
-                charsRead += counts[j];
+                leaves.add(new Node((char)j, counts[j]));
             }
         }
+        PriorityQueue<Node> charPQ;
+        if (queueBackend == PriorityQueueBackend.BINARY) {
+            charPQ = new MinHeapPriorityQueue<>(leaves);
+        } else {
+            charPQ = queueBackend.create();
+            for (Node n : leaves) charPQ.insert(n);
+        }
         // Creates a Huffman trie with low count chars combining first
         while (charPQ.size() > 1) {
             Node x = charPQ.delNext();
@@ -73,11 +199,88 @@ public class HuffmanEncoder {
      * @param s -- String to be Huffman encoded
      */
     public void encode(String s) {
+        long start = System.nanoTime();
         originalString = s;
+        encodedText = null;
+        if (dictionary != null) {
+            encodeWithDictionary(s);
+            if (listener != null) {
+                long done = System.nanoTime();
+                // Only counted for the entropy figure
+                Histogram h = new Histogram();
+                h.add(s);
+                counts = h.counts();
+                reportEncode(s.length(), encodedText.length(), (encodedText.length() + 7) / 8, 0, done - start);
+            }
+            return;
+        }
         trie = buildTrie(s);
+        bitStrings = new String[counts.length];
+        encodedTrie = "";
+        if (useCanonical()) {
+            // Replace the trie with the one the canonical codes describe
+            buildCodes();
+            trie = trieFromCodes();
+        }
         getEncodedTree();
         getBitStrings();
+        long built = System.nanoTime();
         getEncodedText();
+        if (listener != null) {
+            reportEncode(s.length(), encodedText.length(), (encodedText.length() + 7) / 8,
+                    built - start, System.nanoTime() - built);
+        }
+    }
+
+    /**
+     * Tells the listener about an encode; counts[] must hold the input's counts.
+     *
+     * @param buildNanos -- time spent on the trie and codes
+     * @param encodeNanos -- time spent on the rest
+     */
+    private void reportEncode(long symbols, long encodedBits, long outputBytes, long buildNanos, long encodeNanos) {
+        listener.encoded(symbols, encodedBits, outputBytes, HuffmanStats.entropy(counts),
+                buildNanos, encodeNanos, dictionary != null);
+    }
+
+    /**
+     * @return number of bits the codes of counts[] take, for the streaming compressor
+     */
+    private long encodedBits() {
+        long bits = 0;
+        for (int i = 0; i < codeLengths.length; i++) {
+            if (codeLengths[i] > 0) bits += counts[i] * codeLengths[i];
+        }
+        return bits;
+    }
+
+    /**
+     * Dictionary mode of encode(): nothing is counted or built, the codes
+     * and bit strings come straight from the dictionary. The trie is only
+     * made if getEncodedTree() asks for it.
+     */
+    private void encodeWithDictionary(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) > 255) throw new IllegalArgumentException("A dictionary only has codes for byte values");
+        }
+        counts = new long[256];
+        codes = dictionary.codes;
+        codeLengths = dictionary.lengths;
+        bitStrings = dictionary.bitStrings().clone();
+        trie = null;
+        encodedTrie = "";
+        getEncodedText();
+    }
+
+    /**
+     * Byte mode: encodes arbitrary binary data, such as UTF-8 text, with
+     * one symbol per byte value. Byte b is the char (char) (b & 0xff) in
+     * getEncodedTree() and getBitStrings().
+     *
+     * @param data -- bytes to be Huffman encoded
+     */
+    public void encode(byte[] data) {
+        encode(new String(data, StandardCharsets.ISO_8859_1));
     }
 
     /**
@@ -103,6 +306,7 @@ public class HuffmanEncoder {
      * @return String encoding of Huffman tree, as per slides
      */
     public String getEncodedTree() {
+        if (trie == null && dictionary != null && codes != null) trie = trieFromCodes();
         if (encodedTrie.equals("")) preOrderWalkTrie(trie);
         return encodedTrie;
     }
@@ -123,14 +327,10 @@ public class HuffmanEncoder {
         }
         // Traverse all the way left first, then right
         if (n.left != null) {
-            bits += "0";
-            preOrderWalkBitStrings(n.left, bits);
-            // Delete the recently added 0 for correct right sibling bit reading
-            bits = bits.substring(0,bits.length()-1);
+            preOrderWalkBitStrings(n.left, bits + "0");
         }
         if (n.right != null) {
-            bits += "1";
-            preOrderWalkBitStrings(n.right, bits);
+            preOrderWalkBitStrings(n.right, bits + "1");
         }
         return bitStrings;
     }
@@ -138,7 +338,8 @@ public class HuffmanEncoder {
      * Huffman Part 3: Implement this
      *
      * Returns an array of encoded bit strings.
-     * Array should have 256 entries (one for each character value 0-255).
+     * Array should have 256 entries (one for each character value 0-255),
+     * or one per char value up to the largest char in a wider input.
      * Entries that correspond to a character in the input should contain
      * the bitstring for that character.
      * Entries whose characters are not in the input should be null.
@@ -148,9 +349,98 @@ public class HuffmanEncoder {
      * @return array of encoded bit strings
      */
     public String[] getBitStrings() {
+        if (useCanonical()) {
+            for (int i = 0; i < bitStrings.length; i++) {
+                bitStrings[i] = (codeLengths[i] < 0) ? null : bitString(codes[i], codeLengths[i]);
+            }
+            return bitStrings;
+        }
         return preOrderWalkBitStrings(trie, "");
     }
 
+    /**
+     * Header for canonical mode: for every symbol in the input, in order
+     * of symbol value, the symbol itself followed by a char whose value
+     * is the length of its code.
+     *
+     * @return String encoding of the code lengths
+     */
+    public String getEncodedLengths() {
+        if (!useCanonical()) throw new IllegalStateException("Code lengths are only sent in canonical mode");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < codeLengths.length; i++) {
+            if (codeLengths[i] >= 0) {
+                sb.append((char) i).append((char) codeLengths[i]);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Assigns canonical codes: symbols are ordered by code length, then by
+     * symbol value, and each gets the previous code plus one, shifted left
+     * whenever the length grows. Only the lengths need to be transmitted.
+     *
+     * @param lengths -- code length of each symbol, negative if absent
+     * @return code of each symbol, right-aligned
+     */
+    static long[] canonicalCodes(int[] lengths) {
+        int maxLen = 0;
+        for (int len : lengths) maxLen = Math.max(maxLen, len);
+        // Number of codes of each length, then the first code of each length
+        int[] lengthCounts = new int[maxLen + 1];
+        for (int len : lengths) {
+            if (len > 0) lengthCounts[len]++;
+        }
+        long[] next = new long[maxLen + 1];
+        long code = 0;
+        for (int len = 1; len <= maxLen; len++) {
+            code = (code + lengthCounts[len - 1]) << 1;
+            next[len] = code;
+        }
+        long[] codes = new long[lengths.length];
+        for (int i = 0; i < lengths.length; i++) {
+            if (lengths[i] > 0) codes[i] = next[lengths[i]]++;
+        }
+        return codes;
+    }
+
+    /**
+     * @return the low len bits of code as a String of '0's and '1's
+     */
+    static String bitString(long code, int len) {
+        char[] bits = new char[len];
+        for (int i = len - 1; i >= 0; i--) {
+            bits[i] = ((code & 1) == 0) ? '0' : '1';
+            code >>>= 1;
+        }
+        return new String(bits);
+    }
+
+    /**
+     * Rebuilds the trie so that its paths spell out codes[].
+     */
+    private Node trieFromCodes() {
+        Node root = new Node(null, 0);
+        for (int i = 0; i < codeLengths.length; i++) {
+            if (codeLengths[i] < 0) continue;
+            if (codeLengths[i] == 0) return new Node((char) i, counts[i]);
+            Node curr = root;
+            for (int b = codeLengths[i] - 1; b > 0; b--) {
+                if (((codes[i] >>> b) & 1) == 0) {
+                    if (curr.left == null) curr.left = new Node(null, 0);
+                    curr = curr.left;
+                } else {
+                    if (curr.right == null) curr.right = new Node(null, 0);
+                    curr = curr.right;
+                }
+            }
+            if ((codes[i] & 1) == 0) curr.left = new Node((char) i, counts[i]);
+            else curr.right = new Node((char) i, counts[i]);
+        }
+        return root;
+    }
+
     /**
      * Huffman Part 4: Implement this
      *
@@ -162,13 +452,397 @@ public class HuffmanEncoder {
      * @return 'bit' encoding of overall string
      */
     public String getEncodedText() {
-        String s = "";
+        if (encodedText != null) return encodedText;
+        StringBuilder sb = new StringBuilder();
         // Go through the string and append the bit encoding for every char
-        String[] bitStrings = getBitStrings();
         for (int i = 0; i < originalString.length(); i++) {
-            s += bitStrings[originalString.charAt(i)];
+            sb.append(bitStrings[originalString.charAt(i)]);
+        }
+        encodedText = sb.toString();
+        return encodedText;
+    }
+
+    /**
+     * Streaming pass 1: adds the byte counts of an input stream to counts[].
+     * The stream given to compress() must contain exactly the same bytes.
+     *
+     * @param in -- stream to count, read until end of stream but not closed
+     * @return number of bytes counted
+     */
+    public long count(InputStream in) throws IOException {
+        byte[] buf = new byte[STREAM_BUFFER_SIZE];
+        Histogram h = new Histogram();
+        long total = 0;
+        int r;
+        while ((r = in.read(buf)) > 0) {
+            h.add(buf, 0, r);
+            total += r;
+        }
+        h.addTo(counts);
+        return total;
+    }
+
+    /**
+     * Streaming pass 2: builds the trie from counts[] and writes the
+     * compressed form of the stream to out, as packed bits.
+     *
+     * Output format: one format byte, the number of symbols as an 8 byte
+     * big-endian long, the trie in pre-order (0 bit for an interior node,
+     * 1 bit plus 8 symbol bits for a leaf), then the encoded bytes.
+     * The last byte is padded with 0 bits. In canonical mode the trie is
+     * replaced by the code lengths, see writeLengths().
+     *
+     * @param in -- the same bytes that were passed to count()
+     * @param out -- destination of the compressed stream, not closed
+     * @return number of compressed bytes written
+     */
+    public long compress(InputStream in, OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        long total = 0;
+        for (long c : counts) total += c;
+        prepareCodes();
+        long built = System.nanoTime();
+
+        BitWriter bw = new BitWriter(out);
+        writeHeader(bw, total);
+
+        byte[] buf = new byte[STREAM_BUFFER_SIZE];
+        long seen = 0;
+        int r;
+        while ((r = in.read(buf)) > 0) {
+            for (int i = 0; i < r; i++) {
+                int sym = buf[i] & 0xff;
+                if (codeLengths[sym] < 0) {
+                    throw new IllegalStateException("Input changed between count() and compress()");
+                }
+                bw.write(codes[sym], codeLengths[sym]);
+            }
+            seen += r;
+        }
+        if (seen != total) {
+            throw new IllegalStateException("Input changed between count() and compress()");
+        }
+        bw.flush();
+        if (listener != null) {
+            reportEncode(total, encodedBits(), bw.bytesWritten(), built - start, System.nanoTime() - built);
+        }
+        return bw.bytesWritten();
+    }
+
+    /**
+     * Compresses a file using both streaming passes, so the file is never
+     * held in memory.
+     *
+     * @param f -- file to compress
+     * @param out -- destination of the compressed stream, not closed
+     * @return number of compressed bytes written
+     */
+    public long compress(File f, OutputStream out) throws IOException {
+        counts = new long[256];
+        try (InputStream in = new FileInputStream(f)) {
+            count(in);
+        }
+        try (InputStream in = new FileInputStream(f)) {
+            return compress(in, out);
+        }
+    }
+
+    /**
+     * Compresses one file into another, in the format of compress().
+     * The input is memory-mapped a chunk at a time and counted and
+     * encoded straight from the mapping, and the output goes through a
+     * direct buffer, so neither file is copied onto the heap.
+     *
+     * @param in -- file to compress
+     * @param out -- file to write, replaced if it exists
+     * @return number of compressed bytes written
+     * @throws IllegalArgumentException if in and out are the same file
+     */
+    public long compress(File in, File out) throws IOException {
+        // Opening out truncates it, which would empty the input first
+        if (out.exists() && Files.isSameFile(in.toPath(), out.toPath())) {
+            throw new IllegalArgumentException("Input and output are the same file");
+        }
+        counts = new long[256];
+        try (FileChannel src = FileChannel.open(in.toPath(), StandardOpenOption.READ);
+             FileChannel dst = FileChannel.open(out.toPath(), StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = src.size();
+            for (long pos = 0; pos < size; pos += MAP_CHUNK_SIZE) {
+                count(map(src, pos));
+            }
+            long start = System.nanoTime();
+            prepareCodes();
+            long built = System.nanoTime();
+
+            BitWriter bw = new BitWriter(dst);
+            writeHeader(bw, size);
+            for (long pos = 0; pos < size; pos += MAP_CHUNK_SIZE) {
+                MappedByteBuffer chunk = map(src, pos);
+                int end = chunk.limit();
+                for (int i = 0; i < end; i++) {
+                    int sym = chunk.get(i) & 0xff;
+                    if (codeLengths[sym] < 0) {
+                        throw new IllegalStateException("Input changed while compressing");
+                    }
+                    bw.write(codes[sym], codeLengths[sym]);
+                }
+            }
+            bw.flush();
+            if (listener != null) {
+                reportEncode(size, encodedBits(), bw.bytesWritten(), built - start, System.nanoTime() - built);
+            }
+            return bw.bytesWritten();
+        }
+    }
+
+    /**
+     * Adds the byte counts of the remaining bytes of buf to counts[],
+     * without moving its position.
+     *
+     * @return number of bytes counted
+     */
+    long count(ByteBuffer buf) {
+        Histogram h = new Histogram();
+        h.add(buf);
+        h.addTo(counts);
+        return buf.remaining();
+    }
+
+    private static MappedByteBuffer map(FileChannel ch, long pos) throws IOException {
+        long len = Math.min(MAP_CHUNK_SIZE, ch.size() - pos);
+        return ch.map(FileChannel.MapMode.READ_ONLY, pos, len);
+    }
+
+    /**
+     * Codes for the streaming compressor: the dictionary's, or built from counts[].
+     */
+    private void prepareCodes() {
+        if (dictionary != null) {
+            trie = null;
+            encodedTrie = "";
+            codes = dictionary.codes;
+            codeLengths = dictionary.lengths;
+        } else {
+            buildCodes(counts);
+        }
+    }
+
+    /**
+     * Writes the format byte, the symbol count and the trie or code lengths.
+     * With a dictionary only its id and the symbol count are written, as
+     * variable-length numbers, so short messages keep a short header.
+     */
+    private void writeHeader(BitWriter bw, long total) throws IOException {
+        if (dictionary != null) {
+            bw.write(FORMAT_DICTIONARY, 8);
+            writeVarLong(bw, dictionary.id());
+            writeVarLong(bw, total);
+            return;
+        }
+        bw.write(useCanonical() ? FORMAT_CANONICAL : FORMAT_TREE, 8);
+        bw.write(total >>> 32, 32);
+        bw.write(total, 32);
+        if (useCanonical()) writeLengths(bw, codeLengths);
+        else writeTrie(bw, trie);
+    }
+
+    /**
+     * Builds the trie and codes for a table of counts, without any text.
+     *
+     * @param counts -- number of occurrences of each symbol
+     */
+    void buildCodes(long[] counts) {
+        this.counts = counts;
+        trie = buildTrie(counts);
+        encodedTrie = "";
+        buildCodes();
+    }
+
+    /**
+     * Walks the trie and fills codes[] and codeLengths[] with the packed
+     * form of each bit string. Absent symbols get a length of -1.
+     * Applies the code length limit and canonical assignment if set.
+     */
+    void buildCodes() {
+        codes = new long[counts.length];
+        codeLengths = new int[counts.length];
+        Arrays.fill(codeLengths, -1);
+        if (trie != null) preOrderWalkCodes(trie, 0, 0);
+        int longest = 0;
+        for (int len : codeLengths) longest = Math.max(longest, len);
+        if (maxCodeLength > 0 && longest > maxCodeLength) {
+            codeLengths = limitedCodeLengths(counts, maxCodeLength);
+            longest = maxCodeLength;
+        }
+        if (longest > 64) throw new IllegalStateException("Huffman code longer than 64 bits");
+        if (useCanonical()) codes = canonicalCodes(codeLengths);
+    }
+
+    private void preOrderWalkCodes(Node n, long code, int len) {
+        if (n.c != null) {
+            codes[n.c] = code;
+            codeLengths[n.c] = len;
+            return;
+        }
+        preOrderWalkCodes(n.left, code << 1, len + 1);
+        preOrderWalkCodes(n.right, (code << 1) | 1, len + 1);
+    }
+
+    /**
+     * Package-merge: optimal code lengths no longer than maxLen.
+     *
+     * Each symbol is a coin worth 2^-len with its count as cost. Starting
+     * from the deepest level, items are paired off into packages, and the
+     * packages are merged with a fresh copy of the symbols sorted by cost.
+     * After maxLen - 1 rounds the cheapest 2n - 2 items are kept, and a
+     * symbol's code length is the number of kept items it appears in.
+     *
+     * @param counts -- number of occurrences of each symbol
+     * @param maxLen -- longest code allowed
+     * @return code length of each symbol, -1 if absent
+     */
+    static int[] limitedCodeLengths(long[] counts, int maxLen) {
+        int[] lengths = new int[counts.length];
+        Arrays.fill(lengths, -1);
+        // Symbols present, sorted by count
+        int n = 0;
+        for (long c : counts) {
+            if (c != 0) n++;
+        }
+        if (n > 0 && maxLen < 64 && (1L << maxLen) < n) {
+            throw new IllegalArgumentException(n + " symbols don't fit in codes of " + maxLen + " bits");
+        }
+        Long[] order = new Long[n];
+        n = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) order[n++] = (long) i;
+        }
+        final long[] weights = counts;
+        Arrays.sort(order, new Comparator<Long>() {
+            @Override
+            public int compare(Long a, Long b) {
+                int cmp = Long.compare(weights[a.intValue()], weights[b.intValue()]);
+                return (cmp != 0) ? cmp : Long.compare(a, b);
+            }
+        });
+        if (n == 1) {
+            lengths[order[0].intValue()] = 0;
+            return lengths;
+        }
+
+        // Item pool: leaves have a symbol, packages have two children
+        int capacity = n * (2 * maxLen + 1);
+        long[] weight = new long[capacity];
+        int[] symbol = new int[capacity];
+        int[] left = new int[capacity];
+        int[] right = new int[capacity];
+        int items = 0;
+        int[] leaves = new int[n];
+        for (int i = 0; i < n; i++) {
+            int sym = order[i].intValue();
+            weight[items] = counts[sym];
+            symbol[items] = sym;
+            leaves[i] = items++;
+        }
+        int[] current = leaves;
+        for (int level = 1; level < maxLen; level++) {
+            int packages = current.length / 2;
+            int[] merged = new int[n + packages];
+            int li = 0, pi = 0;
+            for (int m = 0; m < merged.length; m++) {
+                if (pi < packages) {
+                    long pw = weight[current[2 * pi]] + weight[current[2 * pi + 1]];
+                    if (li == n || pw < weight[leaves[li]]) {
+                        weight[items] = pw;
+                        symbol[items] = -1;
+                        left[items] = current[2 * pi];
+                        right[items] = current[2 * pi + 1];
+                        merged[m] = items++;
+                        pi++;
+                        continue;
+                    }
+                }
+                merged[m] = leaves[li++];
+            }
+            current = merged;
+        }
+
+        for (int i = 0; i < n; i++) lengths[order[i].intValue()] = 0;
+        int[] stack = new int[2 * maxLen + 2];
+        for (int i = 0; i < 2 * n - 2; i++) {
+            int top = 0;
+            stack[top++] = current[i];
+            while (top > 0) {
+                int item = stack[--top];
+                if (symbol[item] >= 0) {
+                    lengths[symbol[item]]++;
+                } else {
+                    stack[top++] = left[item];
+                    stack[top++] = right[item];
+                }
+            }
+        }
+        return lengths;
+    }
+
+    /**
+     * Writes v 7 bits per byte, low bits first, with the top bit of each
+     * byte set when more bytes follow.
+     *
+     * @param v -- number to write, not negative
+     */
+    static void writeVarLong(BitWriter bw, long v) throws IOException {
+        while (v >= 0x80) {
+            bw.write((v & 0x7f) | 0x80, 8);
+            v >>>= 7;
+        }
+        bw.write(v, 8);
+    }
+
+    /**
+     * Writes canonical code lengths as packed bits. A 3 bit field gives the
+     * width w of each length, then a flag picks the smaller of two layouts:
+     *      0 -- 9 bit symbol count n, then n pairs of 8 bit symbol, w bit length
+     *      1 -- 256 bit presence map, then a w bit length per present symbol
+     * Absent symbols have a negative length and are not written.
+     */
+    static void writeLengths(BitWriter bw, int[] lengths) throws IOException {
+        int n = 0, maxLen = 0;
+        for (int len : lengths) {
+            if (len >= 0) n++;
+            maxLen = Math.max(maxLen, len);
+        }
+        int w = Math.max(1, 32 - Integer.numberOfLeadingZeros(maxLen));
+        bw.write(w, 3);
+        boolean dense = 256 + n * w < 9 + n * (8 + w);
+        bw.write(dense ? 1 : 0, 1);
+        if (dense) {
+            for (int len : lengths) bw.write(len >= 0 ? 1 : 0, 1);
+        } else {
+            bw.write(n, 9);
+        }
+        for (int i = 0; i < lengths.length; i++) {
+            if (lengths[i] < 0) continue;
+            if (!dense) bw.write(i, 8);
+            bw.write(lengths[i], w);
+        }
+    }
+
+    /**
+     * Writes the trie in pre-order as packed bits, the binary
+     * equivalent of getEncodedTree().
+     */
+    private void writeTrie(BitWriter bw, Node n) throws IOException {
+        if (n == null) return;
+        if (n.c == null) {
+            bw.write(0, 1);
+            writeTrie(bw, n.left);
+            writeTrie(bw, n.right);
+        } else {
+            bw.write(1, 1);
+            bw.write(n.c, 8);
         }
-        return s;
     }
 
 
@@ -183,6 +857,89 @@ public class HuffmanEncoder {
 
 }
 
+/**
+ * Buffered writer of packed bits, most significant bit first.
+ * Bits are collected in a long and copied out an int at a time
+ * into a buffer that is handed to the OutputStream or channel when full.
+ */
+class BitWriter {
+    private final OutputStream out;             // null when writing to a channel
+    private final WritableByteChannel channel;
+    private final ByteBuffer buf;
+    private long acc;       // pending bits, low bitCount bits are valid
+    private int bitCount;   // always < 32 between calls
+    private long flushed;   // bytes already handed to out
+
+    public BitWriter(OutputStream out) {
+        this.out = out;
+        channel = null;
+        buf = ByteBuffer.allocate(HuffmanEncoder.STREAM_BUFFER_SIZE);
+    }
+
+    /**
+     * Writes through a direct buffer, so the bytes go to the channel
+     * without another copy on the heap.
+     */
+    public BitWriter(WritableByteChannel channel) {
+        out = null;
+        this.channel = channel;
+        buf = ByteBuffer.allocateDirect(HuffmanEncoder.STREAM_BUFFER_SIZE);
+    }
+
+    /**
+     * Appends the low n bits of bits, high bit first.
+     *
+     * @param bits -- bits to write, right-aligned
+     * @param n -- number of bits to write, 0 to 64
+     */
+    public void write(long bits, int n) throws IOException {
+        if (n > 32) {
+            write(bits >>> 32, n - 32);
+            n = 32;
+        }
+        acc = (acc << n) | (bits & ((1L << n) - 1));
+        bitCount += n;
+        // Copy out a whole int at a time; the buffer length is a multiple of 4
+        if (bitCount >= 32) {
+            bitCount -= 32;
+            buf.putInt((int) (acc >>> bitCount));
+            if (!buf.hasRemaining()) flushBuffer();
+        }
+    }
+
+    /**
+     * Pads the last partial byte with 0 bits and pushes everything to the stream.
+     */
+    public void flush() throws IOException {
+        while (bitCount > 0) {
+            int n = Math.min(bitCount, 8);
+            bitCount -= n;
+            buf.put((byte) ((acc >>> bitCount) << (8 - n)));
+            if (!buf.hasRemaining()) flushBuffer();
+        }
+        flushBuffer();
+        if (out != null) out.flush();
+    }
+
+    /**
+     * @return number of whole bytes produced so far, exact after flush()
+     */
+    public long bytesWritten() {
+        return flushed + buf.position();
+    }
+
+    private void flushBuffer() throws IOException {
+        flushed += buf.position();
+        if (out != null) {
+            out.write(buf.array(), 0, buf.position());
+        } else {
+            buf.flip();
+            while (buf.hasRemaining()) channel.write(buf);
+        }
+        buf.clear();
+    }
+}
+
 class MinHeapPriorityQueue<I extends Comparable<I>> implements PriorityQueue<I> {
     // Java doesn't like creating arrays of generic types
     // I'm providing code that will manage this array for you
@@ -197,6 +954,51 @@ class MinHeapPriorityQueue<I extends Comparable<I>> implements PriorityQueue<I>
         heap = (I[]) new Comparable[1];
     }
 
+    /**
+     * Builds a heap of the given items in linear time, by sinking each
+     * parent from the last one up to the root (Floyd's method).
+     *
+     * @param items -- items to start with, not modified
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public MinHeapPriorityQueue(I[] items) {
+        N = items.length;
+        heap = (I[]) new Comparable[Math.max(1, N)];
+        System.arraycopy(items, 0, heap, 0, N);
+        for (int k = N / 2 - 1; k >= 0; k--) sink(k);
+    }
+
+    /**
+     * @param items -- items to start with, heapified as by MinHeapPriorityQueue(I[])
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public MinHeapPriorityQueue(Collection<? extends I> items) {
+        this((I[]) items.toArray(new Comparable[0]));
+    }
+
+    /**
+     * Adds all items at the end of the heap array, then restores heap
+     * order in one bottom-up pass over their ancestors. Each pass sinks
+     * the parents of the range fixed by the one before, so the work is
+     * linear in the number of items plus a log squared term, rather than
+     * a sift up per item.
+     *
+     * @param items -- items to insert
+     */
+    public void insertAll(Collection<? extends I> items) {
+        int k = items.size();
+        if (k == 0) return;
+        if (N + k > heap.length) resize(N + k);
+        int lo = N;
+        for (I item : items) heap[N++] = item;
+        int hi = N - 1;
+        while (hi > 0) {
+            lo = (lo - 1) / 2;
+            hi = (hi - 1) / 2;
+            for (int i = hi; i >= lo; i--) sink(i);
+        }
+    }
+
     /**
      * Priority Queue Part 1: Implement this
      *
@@ -253,6 +1055,13 @@ class MinHeapPriorityQueue<I extends Comparable<I>> implements PriorityQueue<I>
         return min;
     }
 
+    /**
+     * @return the item delNext() would return, left in the queue, or null if empty
+     */
+    public I peek() {
+        return (N == 0) ? null : heap[0];
+    }
+
     /**
      * I assume you use N to track number of items in the heap.
      * If that's not the case, update this method.
@@ -277,6 +1086,31 @@ class MinHeapPriorityQueue<I extends Comparable<I>> implements PriorityQueue<I>
         heap = newHeap;
     }
 
+    /**
+     * Grows the heap array to hold at least capacity items.
+     */
+    private void resize(int capacity) {
+        heap = Arrays.copyOf(heap, Math.max(capacity, heap.length * 2));
+    }
+
+    /**
+     * Moves the item at position hole down until neither child is smaller.
+     */
+    private void sink(int hole) {
+        I item = heap[hole];
+        while (2*hole + 1 < N) {
+            int child = 2*hole + 1;
+            if (child + 1 < N && heap[child+1].compareTo(heap[child]) < 0) {
+                child++;
+            }
+            if (heap[child].compareTo(item) < 0) {
+                heap[hole] = heap[child];
+                hole = child;
+            } else break;
+        }
+        heap[hole] = item;
+    }
+
     /**
      * Returns a stringified version of the array. You shouldn't
      * need to mess with this if you use the heap array. If you do
@@ -2,6 +2,15 @@ import org.junit.Test;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
 public class HuffmanEncoderTests {
 
     private String testString = "ABRACADABRA!";
@@ -50,4 +59,348 @@ public class HuffmanEncoderTests {
         assertEquals(28, he.getEncodedText().length());
     }
 
+    private byte[] streamRoundTrip(byte[] data) throws IOException {
+        return streamRoundTrip(data, false);
+    }
+
+    private byte[] streamRoundTrip(byte[] data, boolean canonical) throws IOException {
+        HuffmanEncoder he = new HuffmanEncoder();
+        he.setCanonical(canonical);
+        return streamRoundTrip(data, he);
+    }
+
+    private byte[] streamRoundTrip(byte[] data, HuffmanEncoder he) throws IOException {
+        HuffmanDecoder hd = new HuffmanDecoder();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+
+        assertEquals(data.length, he.count(new ByteArrayInputStream(data)));
+        he.compress(new ByteArrayInputStream(data), compressed);
+        hd.decompress(new ByteArrayInputStream(compressed.toByteArray()), decoded);
+        return decoded.toByteArray();
+    }
+
+    @Test
+    public void testStreamRoundTrip() throws IOException {
+        byte[] data = testString.getBytes("ISO-8859-1");
+        assertArrayEquals(data, streamRoundTrip(data));
+    }
+
+    @Test
+    public void testStreamRandomBytes() throws IOException {
+        byte[] data = new byte[200000];
+        Random RNG = new Random(1234);
+        for(int i = 0; i < data.length; i++) {
+            // skewed so code lengths vary
+            data[i] = (byte) (RNG.nextInt(256) & RNG.nextInt(256));
+        }
+        assertArrayEquals(data, streamRoundTrip(data));
+    }
+
+    @Test
+    public void testStreamSingleSymbol() throws IOException {
+        byte[] data = {7, 7, 7, 7};
+        assertArrayEquals(data, streamRoundTrip(data));
+    }
+
+    @Test
+    public void testStreamEmpty() throws IOException {
+        assertArrayEquals(new byte[0], streamRoundTrip(new byte[0]));
+    }
+
+    @Test
+    public void testStreamPackedLength() throws IOException {
+        HuffmanEncoder he = new HuffmanEncoder();
+        byte[] data = testString.getBytes("ISO-8859-1");
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        he.count(new ByteArrayInputStream(data));
+        // 9 header bytes, 59 trie bits and 28 text bits
+        assertEquals(20, he.compress(new ByteArrayInputStream(data), compressed));
+        assertEquals(20, compressed.size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testStreamChangedInput() throws IOException {
+        HuffmanEncoder he = new HuffmanEncoder();
+        he.count(new ByteArrayInputStream(new byte[]{1, 2, 3}));
+        he.compress(new ByteArrayInputStream(new byte[]{1, 2, 3, 3}), new ByteArrayOutputStream());
+    }
+
+    private byte[] mappedRoundTrip(byte[] data, HuffmanEncoder he) throws IOException {
+        File in = File.createTempFile("huffman", ".in");
+        File out = File.createTempFile("huffman", ".huf");
+        try {
+            try (FileOutputStream fos = new FileOutputStream(in)) {
+                fos.write(data);
+            }
+            long written = he.compress(in, out);
+            assertEquals(out.length(), written);
+
+            // Same bytes as the stream compressor
+            ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+            he.compress(in, streamed);
+            ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+            try (FileInputStream fis = new FileInputStream(out)) {
+                ByteArrayOutputStream mapped = new ByteArrayOutputStream();
+                byte[] buf = new byte[4096];
+                int r;
+                while ((r = fis.read(buf)) > 0) mapped.write(buf, 0, r);
+                assertArrayEquals(streamed.toByteArray(), mapped.toByteArray());
+                new HuffmanDecoder().decompress(new ByteArrayInputStream(mapped.toByteArray()), decoded);
+            }
+            return decoded.toByteArray();
+        } finally {
+            in.delete();
+            out.delete();
+        }
+    }
+
+    @Test
+    public void testMappedFileOntoItself() throws IOException {
+        byte[] data = "the input must survive".getBytes("US-ASCII");
+        File f = File.createTempFile("huffman", ".in");
+        try {
+            try (FileOutputStream fos = new FileOutputStream(f)) {
+                fos.write(data);
+            }
+            // Another path to the same file
+            File alias = new File(new File(f.getParentFile(), "."), f.getName());
+            try {
+                new HuffmanEncoder().compress(f, alias);
+                fail("Compressed a file onto itself");
+            } catch (IllegalArgumentException expected) {
+            }
+            assertEquals(data.length, f.length());
+        } finally {
+            f.delete();
+        }
+    }
+
+    @Test
+    public void testMappedFile() throws IOException {
+        byte[] data = new byte[300000];
+        Random RNG = new Random(77);
+        for(int i = 0; i < data.length; i++) {
+            data[i] = (byte) (RNG.nextInt(256) & RNG.nextInt(256));
+        }
+        assertArrayEquals(data, mappedRoundTrip(data, new HuffmanEncoder()));
+        HuffmanEncoder he = new HuffmanEncoder();
+        he.setCanonical(true);
+        assertArrayEquals(data, mappedRoundTrip(data, he));
+    }
+
+    @Test
+    public void testMappedEmptyFile() throws IOException {
+        assertArrayEquals(new byte[0], mappedRoundTrip(new byte[0], new HuffmanEncoder()));
+    }
+
+    /**
+     * Fibonacci counts give the deepest possible trie. The symbols are
+     * shuffled so codes of every length are interleaved.
+     */
+    private byte[] fibonacciBytes(int symbols) {
+        long a = 1, b = 1;
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        for(int s = 0; s < symbols; s++) {
+            for(long i = 0; i < a; i++) {
+                data.write(s);
+            }
+            long t = a + b;
+            a = b;
+            b = t;
+        }
+        byte[] bytes = data.toByteArray();
+        Random RNG = new Random(1234);
+        for(int i = bytes.length - 1; i > 0; i--) {
+            int j = RNG.nextInt(i + 1);
+            byte t = bytes[i];
+            bytes[i] = bytes[j];
+            bytes[j] = t;
+        }
+        return bytes;
+    }
+
+    @Test
+    public void testStreamDeepCodes() throws IOException {
+        // the decoder has to follow its table into sub-tables
+        byte[] bytes = fibonacciBytes(25);
+        assertArrayEquals(bytes, streamRoundTrip(bytes));
+        assertArrayEquals(bytes, streamRoundTrip(bytes, true));
+    }
+
+    @Test(expected = HuffmanDecodeException.class)
+    public void testStreamTruncated() throws IOException {
+        HuffmanEncoder he = new HuffmanEncoder();
+        byte[] data = testString.getBytes("ISO-8859-1");
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        he.count(new ByteArrayInputStream(data));
+        he.compress(new ByteArrayInputStream(data), compressed);
+        byte[] cut = Arrays.copyOf(compressed.toByteArray(), compressed.size() - 2);
+        new HuffmanDecoder().decompress(new ByteArrayInputStream(cut), new ByteArrayOutputStream());
+    }
+
+    @Test
+    public void testCanonicalBitStrings() {
+        HuffmanEncoder he = new HuffmanEncoder();
+        HuffmanDecoder hd = new HuffmanDecoder();
+        he.setCanonical(true);
+
+        he.encode(testString);
+        String[] ebs = he.getBitStrings();
+        hd.parseLengths(he.getEncodedLengths());
+        String[] dbs = hd.getBitStrings();
+
+        // lengths are A:1, B:3, D:3, R:3, !:4, C:4, codes count up in that order
+        assertEquals("0", ebs['A']);
+        assertEquals("100", ebs['B']);
+        assertEquals("101", ebs['D']);
+        assertEquals("110", ebs['R']);
+        assertEquals("1110", ebs['!']);
+        assertEquals("1111", ebs['C']);
+        for(int i = 0; i < ebs.length; i++) {
+            assertEquals(dbs[i], ebs[i]);
+        }
+    }
+
+    @Test
+    public void testCanonicalEncodedText() {
+        HuffmanEncoder he = new HuffmanEncoder();
+        HuffmanDecoder hd = new HuffmanDecoder();
+        he.setCanonical(true);
+
+        he.encode(testString);
+        assertEquals(28, he.getEncodedText().length());
+        hd.parseLengths(he.getEncodedLengths());
+        assertEquals(testString, hd.decode(he.getEncodedText()));
+        // the canonical trie can still be sent the old way
+        hd.parseTree(he.getEncodedTree());
+        assertEquals(testString, hd.decode(he.getEncodedText()));
+    }
+
+    @Test
+    public void testCanonicalHeaderSmaller() {
+        HuffmanEncoder he = new HuffmanEncoder();
+        he.setCanonical(true);
+        he.encode(testString);
+        assertEquals(12, he.getEncodedLengths().length());
+        assertEquals(17, he.getEncodedTree().length());
+    }
+
+    @Test
+    public void testCanonicalStreamRoundTrip() throws IOException {
+        byte[] data = new byte[100000];
+        Random RNG = new Random(1234);
+        for(int i = 0; i < data.length; i++) {
+            data[i] = (byte) (RNG.nextInt(256) & RNG.nextInt(256));
+        }
+        assertArrayEquals(data, streamRoundTrip(data, true));
+        assertArrayEquals(new byte[]{5, 5}, streamRoundTrip(new byte[]{5, 5}, true));
+        assertArrayEquals(new byte[0], streamRoundTrip(new byte[0], true));
+    }
+
+    @Test(expected = HuffmanParseException.class)
+    public void testParseLengthsIncomplete() {
+        // two codes of length 2 leave half the code space unused
+        new HuffmanDecoder().parseLengths("A\u0002B\u0002");
+    }
+
+    @Test(expected = HuffmanParseException.class)
+    public void testParseTreeTruncated() {
+        new HuffmanDecoder().parseTree("01A");
+    }
+
+    @Test
+    public void testLimitedLengthsOptimal() {
+        long[] counts = new long[256];
+        counts['a'] = 1;
+        counts['b'] = 1;
+        counts['c'] = 2;
+        counts['d'] = 4;
+        counts['e'] = 8;
+        counts['f'] = 16;
+        // unlimited the lengths would be 5,5,4,3,2,1 for a cost of 62
+        int[] lengths = HuffmanEncoder.limitedCodeLengths(counts, 4);
+        long cost = 0;
+        double kraft = 0;
+        for(int i = 0; i < 256; i++) {
+            if(counts[i] == 0) {
+                assertEquals(-1, lengths[i]);
+                continue;
+            }
+            assertTrue(lengths[i] <= 4);
+            cost += counts[i] * lengths[i];
+            kraft += Math.pow(2, -lengths[i]);
+        }
+        assertEquals(64, cost);
+        assertEquals(1.0, kraft, 0.0);
+    }
+
+    @Test
+    public void testLimitedLengthsRoundTrip() throws IOException {
+        byte[] bytes = fibonacciBytes(25);
+        HuffmanEncoder he = new HuffmanEncoder();
+        he.setMaxCodeLength(15);
+        assertArrayEquals(bytes, streamRoundTrip(bytes, he));
+        for(int len : he.codeLengths) {
+            assertTrue(len <= 15);
+        }
+
+        String s = new String(bytes, "ISO-8859-1");
+        he.encode(s);
+        HuffmanDecoder hd = new HuffmanDecoder();
+        hd.parseLengths(he.getEncodedLengths());
+        assertEquals(s, hd.decode(he.getEncodedText()));
+    }
+
+    @Test
+    public void testLimitNotReached() {
+        HuffmanEncoder he = new HuffmanEncoder();
+        he.setMaxCodeLength(15);
+        he.encode(testString);
+        assertEquals(28, he.getEncodedText().length());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLimitTooSmall() {
+        HuffmanEncoder he = new HuffmanEncoder();
+        he.setMaxCodeLength(2);
+        // 6 symbols need at least 3 bits
+        he.encode(testString);
+    }
+
+    @Test
+    public void testUnicodeText() {
+        String text = "\u00e9t\u00e9 \u6771\u4eac \u6771\u4eac \ud83d\ude00!";
+        HuffmanEncoder he = new HuffmanEncoder();
+        HuffmanDecoder hd = new HuffmanDecoder();
+
+        he.encode(text);
+        String[] ebs = he.getBitStrings();
+        assertEquals(0xde00 + 1, ebs.length);
+        hd.parseTree(he.getEncodedTree());
+        assertArrayEquals(ebs, hd.getBitStrings());
+        assertEquals(text, hd.decode(he.getEncodedText()));
+
+        he.setCanonical(true);
+        he.encode(text);
+        hd.parseLengths(he.getEncodedLengths());
+        assertEquals(text, hd.decode(he.getEncodedText()));
+    }
+
+    @Test
+    public void testByteMode() throws IOException {
+        byte[] data = "na\u00efve caf\u00e9 \u2603".getBytes("UTF-8");
+        byte[] binary = new byte[1000];
+        new Random(1234).nextBytes(binary);
+        HuffmanEncoder he = new HuffmanEncoder();
+        HuffmanDecoder hd = new HuffmanDecoder();
+
+        for(byte[] input : new byte[][]{data, binary}) {
+            he.encode(input);
+            assertEquals(256, he.getBitStrings().length);
+            hd.parseTree(he.getEncodedTree());
+            assertArrayEquals(input, hd.decodeBytes(he.getEncodedText()));
+        }
+    }
+
 }
@@ -0,0 +1,231 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Huffman format with the payload split into four bitstreams that share
+ * one code table. The input is cut into four segments, each encoded into
+ * a stream of its own. The decoder runs all four in the same loop; they
+ * don't depend on each other, so the CPU can work on several lookups at
+ * once instead of waiting for each code before starting the next. How
+ * much that gains depends on the CPU; the benchmark's interleaved-dec op
+ * measures it against decompress.
+ *
+ * Codes are limited to TABLE_BITS bits, so every symbol decodes with a
+ * single lookup in a flat table.
+ *
+ * Format, integers big-endian:
+ *      1 byte  -- FORMAT_INTERLEAVED
+ *      8 bytes -- number of decoded bytes; nothing follows if 0
+ *      4 bytes -- length of the code lengths, then the code lengths as
+ *                 written by HuffmanEncoder.writeLengths()
+ *      4 x 4 bytes -- length in bytes of each stream
+ *      the four streams, each padded to a byte
+ *
+ * Streams 0 to 2 hold a quarter of the input each, rounded down;
+ * stream 3 holds the rest.
+ */
+public class HuffmanInterleavedCompressor {
+    /** Format tag, after the HuffmanEncoder and HuffmanBlockCompressor formats */
+    static final int FORMAT_INTERLEAVED = 3;
+    static final int STREAMS = 4;
+    /** Longest code and index width of the decode table */
+    static final int TABLE_BITS = 11;
+    // Symbols decoded per stream between reloads; a reload leaves at least 57 valid bits
+    private static final int SYMBOLS_PER_LOAD = 4;
+
+    /**
+     * @param data -- bytes to compress
+     * @param out -- destination of the compressed bytes, not closed
+     * @return number of bytes written
+     */
+    public long compress(byte[] data, OutputStream out) throws IOException {
+        DataOutputStream dos = new DataOutputStream(out);
+        dos.writeByte(FORMAT_INTERLEAVED);
+        dos.writeLong(data.length);
+        if (data.length > 0) {
+            HuffmanEncoder he = new HuffmanEncoder();
+            he.setCanonical(true);
+            he.setMaxCodeLength(TABLE_BITS);
+            he.buildCodes(Histogram.count(data, ForkJoinPool.commonPool()));
+
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            BitWriter bw = new BitWriter(header);
+            HuffmanEncoder.writeLengths(bw, he.codeLengths);
+            bw.flush();
+
+            byte[][] streams = new byte[STREAMS][];
+            int segment = data.length / STREAMS;
+            for (int k = 0; k < STREAMS; k++) {
+                int end = (k == STREAMS - 1) ? data.length : (k + 1) * segment;
+                streams[k] = encodeSegment(data, k * segment, end, he.codes, he.codeLengths);
+            }
+
+            dos.writeInt(header.size());
+            header.writeTo(dos);
+            for (byte[] s : streams) dos.writeInt(s.length);
+            for (byte[] s : streams) dos.write(s);
+        }
+        dos.flush();
+        return dos.size();
+    }
+
+    private static byte[] encodeSegment(byte[] data, int from, int to, long[] codes, int[] lengths) throws IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream((to - from) / 2);
+        BitWriter bw = new BitWriter(stream);
+        for (int i = from; i < to; i++) {
+            int sym = data[i] & 0xff;
+            bw.write(codes[sym], lengths[sym]);
+        }
+        bw.flush();
+        return stream.toByteArray();
+    }
+
+    /**
+     * @param in -- compressed bytes, not closed
+     * @param out -- destination of the decoded bytes, not closed
+     * @return number of bytes decoded
+     */
+    public long decompress(InputStream in, OutputStream out) throws IOException {
+        DataInputStream dis = new DataInputStream(in);
+        try {
+            if (dis.readUnsignedByte() != FORMAT_INTERLEAVED) { throw new HuffmanParseException(); }
+            long total = dis.readLong();
+            if (total < 0 || total > Integer.MAX_VALUE) { throw new HuffmanParseException(); }
+            if (total == 0) return 0;
+
+            // Lengths are checked before allocating, so a corrupt one can't ask for a huge array
+            int headerLength = dis.readInt();
+            if (headerLength < 0 || headerLength > HuffmanMessageEncoder.MAX_HEADER_BYTES) {
+                throw new HuffmanParseException();
+            }
+            byte[] header = new byte[headerLength];
+            dis.readFully(header);
+            int[] lengths = HuffmanDecoder.readLengths(new BitReader(new ByteArrayInputStream(header)));
+            int[] table = decodeTable(lengths);
+
+            int[] streamLengths = new int[STREAMS];
+            long payload = 0;
+            for (int k = 0; k < STREAMS; k++) {
+                streamLengths[k] = dis.readInt();
+                if (streamLengths[k] < 0) { throw new HuffmanParseException(); }
+                payload += streamLengths[k];
+            }
+            // No more than TABLE_BITS a symbol, plus each stream's padding
+            if (payload > (total * TABLE_BITS) / 8 + STREAMS) { throw new HuffmanParseException(); }
+            // 8 bytes of slack so a reload near the end can read a whole long
+            if (payload > Integer.MAX_VALUE - 8) { throw new HuffmanParseException(); }
+            byte[] streams = new byte[(int) payload + 8];
+            dis.readFully(streams, 0, (int) payload);
+
+            byte[] decoded = new byte[(int) total];
+            decode(table, streams, streamLengths, decoded);
+            out.write(decoded);
+            out.flush();
+            return total;
+        } catch (EOFException e) {
+            throw new HuffmanDecodeException();
+        }
+    }
+
+    /**
+     * Flat table indexed by the next TABLE_BITS bits of a stream.
+     * Entries are (symbol << 4) | code length.
+     */
+    static int[] decodeTable(int[] lengths) {
+        HuffmanDecoder.checkLengths(lengths);
+        long[] codes = HuffmanEncoder.canonicalCodes(lengths);
+        int[] table = new int[1 << TABLE_BITS];
+        for (int sym = 0; sym < lengths.length; sym++) {
+            int len = lengths[sym];
+            if (len < 0) continue;
+            if (len > TABLE_BITS) { throw new HuffmanParseException(); }
+            int first = (int) codes[sym] << (TABLE_BITS - len);
+            for (int i = 0; i < (1 << (TABLE_BITS - len)); i++) {
+                table[first + i] = (sym << 4) | len;
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Decodes the four streams into out. The main loop reloads each
+     * stream's next 64 bits with one read and then takes several symbols
+     * from every stream in turn; the short tails are done one stream at
+     * a time.
+     */
+    static void decode(int[] table, byte[] streams, int[] streamLengths, byte[] out) {
+        ByteBuffer bb = ByteBuffer.wrap(streams);
+        int shift = 64 - TABLE_BITS;
+        int segment = out.length / STREAMS;
+        int s0 = 0;
+        int s1 = s0 + streamLengths[0];
+        int s2 = s1 + streamLengths[1];
+        int s3 = s2 + streamLengths[2];
+        // Bits consumed so far in each stream
+        long bp0 = 0, bp1 = 0, bp2 = 0, bp3 = 0;
+        int o0 = 0, o1 = segment, o2 = 2 * segment, o3 = 3 * segment;
+        long limit0 = 8L * streamLengths[0], limit1 = 8L * streamLengths[1];
+        long limit2 = 8L * streamLengths[2], limit3 = 8L * streamLengths[3];
+
+        int rounds = segment / SYMBOLS_PER_LOAD;
+        for (int r = 0; r < rounds; r++) {
+            if (bp0 > limit0 || bp1 > limit1 || bp2 > limit2 || bp3 > limit3) { throw new HuffmanDecodeException(); }
+            long b0 = bb.getLong(s0 + (int) (bp0 >>> 3)) << (bp0 & 7);
+            long b1 = bb.getLong(s1 + (int) (bp1 >>> 3)) << (bp1 & 7);
+            long b2 = bb.getLong(s2 + (int) (bp2 >>> 3)) << (bp2 & 7);
+            long b3 = bb.getLong(s3 + (int) (bp3 >>> 3)) << (bp3 & 7);
+            for (int i = 0; i < SYMBOLS_PER_LOAD; i++) {
+                int e0 = table[(int) (b0 >>> shift)];
+                int e1 = table[(int) (b1 >>> shift)];
+                int e2 = table[(int) (b2 >>> shift)];
+                int e3 = table[(int) (b3 >>> shift)];
+                out[o0++] = (byte) (e0 >>> 4);
+                out[o1++] = (byte) (e1 >>> 4);
+                out[o2++] = (byte) (e2 >>> 4);
+                out[o3++] = (byte) (e3 >>> 4);
+                b0 <<= e0 & 15;
+                b1 <<= e1 & 15;
+                b2 <<= e2 & 15;
+                b3 <<= e3 & 15;
+                bp0 += e0 & 15;
+                bp1 += e1 & 15;
+                bp2 += e2 & 15;
+                bp3 += e3 & 15;
+            }
+        }
+
+        bp0 = decodeTail(table, bb, s0, bp0, limit0, out, o0, segment);
+        bp1 = decodeTail(table, bb, s1, bp1, limit1, out, o1, 2 * segment);
+        bp2 = decodeTail(table, bb, s2, bp2, limit2, out, o2, 3 * segment);
+        bp3 = decodeTail(table, bb, s3, bp3, limit3, out, o3, out.length);
+        // Every stream must end inside its last byte
+        if (!usedExactly(bp0, limit0) || !usedExactly(bp1, limit1)
+                || !usedExactly(bp2, limit2) || !usedExactly(bp3, limit3)) {
+            throw new HuffmanDecodeException();
+        }
+    }
+
+    private static long decodeTail(int[] table, ByteBuffer bb, int start, long bp, long limit,
+                                   byte[] out, int from, int to) {
+        for (int o = from; o < to; o++) {
+            if (bp > limit) { throw new HuffmanDecodeException(); }
+            long b = bb.getLong(start + (int) (bp >>> 3)) << (bp & 7);
+            int e = table[(int) (b >>> (64 - TABLE_BITS))];
+            out[o] = (byte) (e >>> 4);
+            bp += e & 15;
+        }
+        return bp;
+    }
+
+    private static boolean usedExactly(long bp, long limit) {
+        return bp <= limit && limit - bp < 8;
+    }
+}
@@ -0,0 +1,125 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+public class HuffmanInterleavedCompressorTests {
+
+    private byte[] compress(byte[] data) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        long written = new HuffmanInterleavedCompressor().compress(data, compressed);
+        assertEquals(compressed.size(), written);
+        return compressed.toByteArray();
+    }
+
+    private byte[] decompress(byte[] compressed) throws IOException {
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        new HuffmanInterleavedCompressor().decompress(new ByteArrayInputStream(compressed), decoded);
+        return decoded.toByteArray();
+    }
+
+    private byte[] skewedBytes(int n, long seed) {
+        byte[] data = new byte[n];
+        Random RNG = new Random(seed);
+        for(int i = 0; i < n; i++) {
+            data[i] = (byte) (RNG.nextInt(256) & RNG.nextInt(256));
+        }
+        return data;
+    }
+
+    @Test
+    public void roundTripSmallSizes() throws IOException {
+        // Sizes around the four-way split and the per-load symbol count
+        for(int n = 0; n < 70; n++) {
+            byte[] data = skewedBytes(n, n);
+            assertArrayEquals("length " + n, data, decompress(compress(data)));
+        }
+    }
+
+    @Test
+    public void roundTripLarge() throws IOException {
+        byte[] data = skewedBytes(1000003, 42);
+        byte[] compressed = compress(data);
+        assertArrayEquals(data, decompress(compressed));
+        assertTrue(compressed.length < data.length * 7 / 8);
+    }
+
+    @Test
+    public void roundTripUniform() throws IOException {
+        byte[] data = new byte[100000];
+        new Random(5).nextBytes(data);
+        assertArrayEquals(data, decompress(compress(data)));
+    }
+
+    @Test
+    public void singleSymbol() throws IOException {
+        byte[] data = new byte[1001];
+        Arrays.fill(data, (byte) 'x');
+        assertArrayEquals(data, decompress(compress(data)));
+    }
+
+    @Test
+    public void codesAreLimited() throws IOException {
+        // Fibonacci counts would give codes of up to 19 bits
+        long a = 1, b = 1;
+        ByteArrayOutputStream fib = new ByteArrayOutputStream();
+        for(int s = 0; s < 20; s++) {
+            for(long i = 0; i < a; i++) {
+                fib.write(s);
+            }
+            long t = a + b;
+            a = b;
+            b = t;
+        }
+        byte[] data = fib.toByteArray();
+        assertArrayEquals(data, decompress(compress(data)));
+    }
+
+    @Test(expected = HuffmanDecodeException.class)
+    public void truncatedStreams() throws IOException {
+        byte[] compressed = compress(skewedBytes(5000, 9));
+        decompress(Arrays.copyOf(compressed, compressed.length - 10));
+    }
+
+    @Test(expected = HuffmanDecodeException.class)
+    public void streamLengthsDontMatch() throws IOException {
+        byte[] data = skewedBytes(5000, 9);
+        byte[] compressed = compress(data);
+        // Drop the last byte of stream 3 and shorten its recorded length
+        int header = 13 + ((compressed[9] & 0xff) << 24 | (compressed[10] & 0xff) << 16
+                | (compressed[11] & 0xff) << 8 | (compressed[12] & 0xff));
+        compressed[header + 15]--;
+        decompress(Arrays.copyOf(compressed, compressed.length - 1));
+    }
+
+    private byte[] withInt(byte[] compressed, int offset, int value) {
+        byte[] b = compressed.clone();
+        for(int i = 0; i < 4; i++) {
+            b[offset + i] = (byte) (value >>> (24 - 8 * i));
+        }
+        return b;
+    }
+
+    @Test(expected = HuffmanParseException.class)
+    public void negativeHeaderLength() throws IOException {
+        decompress(withInt(compress(skewedBytes(5000, 9)), 9, -1));
+    }
+
+    @Test(expected = HuffmanParseException.class)
+    public void hugeHeaderLength() throws IOException {
+        decompress(withInt(compress(skewedBytes(5000, 9)), 9, Integer.MAX_VALUE));
+    }
+
+    @Test(expected = HuffmanParseException.class)
+    public void hugeStreamLength() throws IOException {
+        byte[] compressed = compress(skewedBytes(5000, 9));
+        int header = 13 + ((compressed[9] & 0xff) << 24 | (compressed[10] & 0xff) << 16
+                | (compressed[11] & 0xff) << 8 | (compressed[12] & 0xff));
+        decompress(withInt(compressed, header, Integer.MAX_VALUE - 100));
+    }
+}
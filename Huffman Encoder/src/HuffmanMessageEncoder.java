@@ -0,0 +1,283 @@
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Reusable Huffman encoder for many small messages. Codes are kept as
+ * int code/length arrays and output goes straight into a caller's
+ * byte[] or ByteBuffer. All working storage is allocated once, so a
+ * pooled instance produces no garbage in steady state.
+ *
+ * An encoded message has the layout of a HuffmanBlockCompressor block:
+ * the code lengths as written by HuffmanEncoder.writeLengths(), unless
+ * a fixed table was set, then the packed codes, padded to a byte.
+ * HuffmanBlockCompressor.decodeBlock() decodes it.
+ */
+public class HuffmanMessageEncoder {
+    /** Longest code, short enough for an int code and a small decode table */
+    static final int MAX_CODE_LENGTH = HuffmanBlockCompressor.MAX_CODE_LENGTH;
+    /** Largest possible lengths header in bytes: flag bits, presence map, 4 bit lengths */
+    static final int MAX_HEADER_BYTES = (4 + 256 + 256 * 4 + 7) / 8;
+
+    private final long[] counts = new long[256];
+    private final int[] code = new int[256];
+    private final int[] length = new int[256];
+    private boolean fixedTable;
+
+    // Scratch space for building lengths in place
+    private final long[] sorted = new long[256];
+    private final long[] work = new long[256];
+    private final int[] lengthCounts = new int[MAX_CODE_LENGTH + 1];
+    private final int[] nextCode = new int[MAX_CODE_LENGTH + 1];
+
+    // Output state while encoding
+    private byte[] out;
+    private int pos;
+    private long acc;
+    private int bitCount;
+
+    // Only grown when a ByteBuffer without a backing array is used
+    private byte[] srcScratch = new byte[0];
+    private byte[] dstScratch = new byte[0];
+
+    public HuffmanMessageEncoder() {
+        reset();
+    }
+
+    /**
+     * Forgets any fixed table, so each message gets a table of its own again.
+     */
+    public void reset() {
+        fixedTable = false;
+        Arrays.fill(counts, 0);
+        Arrays.fill(length, -1);
+    }
+
+    /**
+     * Encodes every following message with the same table and without
+     * a lengths header, until reset().
+     *
+     * @param lengths -- code length of each byte value, negative if absent, at most MAX_CODE_LENGTH
+     */
+    public void setTable(int[] lengths) {
+        if (lengths.length != 256) throw new IllegalArgumentException("Need a length for each of 256 byte values");
+        for (int i = 0; i < 256; i++) {
+            if (lengths[i] > MAX_CODE_LENGTH) throw new IllegalArgumentException("Code longer than " + MAX_CODE_LENGTH + " bits");
+            length[i] = lengths[i];
+        }
+        assignCodes();
+        fixedTable = true;
+    }
+
+    /**
+     * Encodes every following message with a dictionary's codes and no
+     * header, until reset(). HuffmanDictionary.decodeMessage() decodes them.
+     */
+    public void setDictionary(HuffmanDictionary d) {
+        setTable(d.lengths);
+    }
+
+    /**
+     * @param len -- number of message bytes
+     * @return the most bytes encode() can write for that message
+     */
+    public static int maxEncodedLength(int len) {
+        return MAX_HEADER_BYTES + (int) (((long) len * MAX_CODE_LENGTH + 7) / 8);
+    }
+
+    /**
+     * Encodes one message.
+     *
+     * @param src -- message bytes
+     * @param off -- offset of the first message byte
+     * @param len -- number of message bytes
+     * @param dst -- output array, needs maxEncodedLength(len) bytes from dstOff
+     * @param dstOff -- where to write
+     * @return number of bytes written; an empty message writes nothing
+     */
+    public int encode(byte[] src, int off, int len, byte[] dst, int dstOff) {
+        if (off < 0 || len < 0 || off + len > src.length) throw new IndexOutOfBoundsException();
+        if (len == 0) return 0;
+        if (dstOff < 0 || dst.length - dstOff < maxEncodedLength(len)) {
+            throw new IllegalArgumentException("Output needs room for " + maxEncodedLength(len) + " bytes");
+        }
+        out = dst;
+        pos = dstOff;
+        acc = 0;
+        bitCount = 0;
+        try {
+            if (!fixedTable) {
+                Arrays.fill(counts, 0);
+                for (int i = off; i < off + len; i++) counts[src[i] & 0xff]++;
+                buildLengths();
+                assignCodes();
+                writeLengths();
+            }
+            for (int i = off; i < off + len; i++) {
+                int sym = src[i] & 0xff;
+                if (length[sym] < 0) throw new IllegalArgumentException("Byte " + sym + " has no code in the table");
+                putBits(code[sym], length[sym]);
+            }
+            if (bitCount > 0) putBits(0, 8 - bitCount);
+        } finally {
+            // Don't hold on to the caller's array
+            out = null;
+        }
+        return pos - dstOff;
+    }
+
+    /**
+     * Encodes the remaining bytes of src into dst, advancing both.
+     *
+     * @return number of bytes written
+     * @throws BufferOverflowException if dst has less than maxEncodedLength() remaining
+     */
+    public int encode(ByteBuffer src, ByteBuffer dst) {
+        int len = src.remaining();
+        if (len == 0) return 0;
+        if (dst.remaining() < maxEncodedLength(len)) throw new BufferOverflowException();
+        byte[] in;
+        int inOff;
+        if (src.hasArray()) {
+            in = src.array();
+            inOff = src.arrayOffset() + src.position();
+        } else {
+            if (srcScratch.length < len) srcScratch = new byte[len];
+            src.duplicate().get(srcScratch, 0, len);
+            in = srcScratch;
+            inOff = 0;
+        }
+        int written;
+        if (dst.hasArray()) {
+            written = encode(in, inOff, len, dst.array(), dst.arrayOffset() + dst.position());
+            dst.position(dst.position() + written);
+        } else {
+            if (dstScratch.length < maxEncodedLength(len)) dstScratch = new byte[maxEncodedLength(len)];
+            written = encode(in, inOff, len, dstScratch, 0);
+            dst.put(dstScratch, 0, written);
+        }
+        src.position(src.position() + len);
+        return written;
+    }
+
+    /**
+     * Huffman code lengths for counts[], computed in place on sorted
+     * weights (Moffat and Katajainen) so no nodes are allocated. Falls
+     * back to package-merge, which does allocate, when a code would be
+     * longer than MAX_CODE_LENGTH.
+     */
+    private void buildLengths() {
+        Arrays.fill(length, -1);
+        int n = 0;
+        // Sort by count, breaking ties on the symbol kept in the low bits
+        for (int i = 0; i < 256; i++) {
+            if (counts[i] != 0) sorted[n++] = (counts[i] << 8) | i;
+        }
+        Arrays.sort(sorted, 0, n);
+        if (n == 1) {
+            length[(int) (sorted[0] & 0xff)] = 0;
+            return;
+        }
+        for (int i = 0; i < n; i++) work[i] = sorted[i] >>> 8;
+
+        // Phase 1: combine weights; work[] ends up holding parent pointers
+        int root = 0, leaf = 2;
+        work[0] += work[1];
+        for (int next = 1; next < n - 1; next++) {
+            if (leaf >= n || work[root] < work[leaf]) {
+                work[next] = work[root];
+                work[root++] = next;
+            } else {
+                work[next] = work[leaf++];
+            }
+            if (leaf >= n || (root < next && work[root] < work[leaf])) {
+                work[next] += work[root];
+                work[root++] = next;
+            } else {
+                work[next] += work[leaf++];
+            }
+        }
+        // Phase 2: parent pointers to depths of the internal nodes
+        work[n - 2] = 0;
+        for (int next = n - 3; next >= 0; next--) work[next] = work[(int) work[next]] + 1;
+        // Phase 3: depths of the internal nodes to leaf depths
+        int avail = 1, used = 0, depth = 0;
+        root = n - 2;
+        int next = n - 1;
+        while (avail > 0) {
+            while (root >= 0 && work[root] == depth) {
+                used++;
+                root--;
+            }
+            while (avail > used) {
+                work[next--] = depth;
+                avail--;
+            }
+            avail = 2 * used;
+            depth++;
+            used = 0;
+        }
+
+        int longest = 0;
+        for (int i = 0; i < n; i++) {
+            length[(int) (sorted[i] & 0xff)] = (int) work[i];
+            longest = Math.max(longest, (int) work[i]);
+        }
+        if (longest > MAX_CODE_LENGTH) {
+            int[] limited = HuffmanEncoder.limitedCodeLengths(counts, MAX_CODE_LENGTH);
+            System.arraycopy(limited, 0, length, 0, 256);
+        }
+    }
+
+    /**
+     * Canonical codes from length[], as in HuffmanEncoder.canonicalCodes().
+     */
+    private void assignCodes() {
+        Arrays.fill(lengthCounts, 0);
+        for (int len : length) {
+            if (len > 0) lengthCounts[len]++;
+        }
+        int next = 0;
+        for (int len = 1; len <= MAX_CODE_LENGTH; len++) {
+            next = (next + lengthCounts[len - 1]) << 1;
+            nextCode[len] = next;
+        }
+        for (int i = 0; i < 256; i++) {
+            code[i] = (length[i] > 0) ? nextCode[length[i]]++ : 0;
+        }
+    }
+
+    /**
+     * Writes length[] in the layout of HuffmanEncoder.writeLengths().
+     */
+    private void writeLengths() {
+        int n = 0, maxLen = 0;
+        for (int len : length) {
+            if (len >= 0) n++;
+            maxLen = Math.max(maxLen, len);
+        }
+        int w = Math.max(1, 32 - Integer.numberOfLeadingZeros(maxLen));
+        putBits(w, 3);
+        boolean dense = 256 + n * w < 9 + n * (8 + w);
+        putBits(dense ? 1 : 0, 1);
+        if (dense) {
+            for (int len : length) putBits(len >= 0 ? 1 : 0, 1);
+        } else {
+            putBits(n, 9);
+        }
+        for (int i = 0; i < 256; i++) {
+            if (length[i] < 0) continue;
+            if (!dense) putBits(i, 8);
+            putBits(length[i], w);
+        }
+    }
+
+    private void putBits(int bits, int n) {
+        acc = (acc << n) | (bits & ((1L << n) - 1));
+        bitCount += n;
+        while (bitCount >= 8) {
+            bitCount -= 8;
+            out[pos++] = (byte) (acc >>> bitCount);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+public class HuffmanMessageEncoderTests {
+
+    private byte[] skewedBytes(int n) {
+        byte[] data = new byte[n];
+        Random RNG = new Random(1234);
+        for(int i = 0; i < n; i++) {
+            data[i] = (byte) (RNG.nextInt(256) & RNG.nextInt(256));
+        }
+        return data;
+    }
+
+    @Test
+    public void testReuse() throws IOException {
+        HuffmanMessageEncoder encoder = new HuffmanMessageEncoder();
+        byte[] out = new byte[HuffmanMessageEncoder.maxEncodedLength(1000)];
+        Random RNG = new Random(1234);
+        for(int m = 0; m < 50; m++) {
+            byte[] message = skewedBytes(1 + RNG.nextInt(1000));
+            int written = encoder.encode(message, 0, message.length, out, 0);
+            byte[] decoded = HuffmanBlockCompressor.decodeBlock(Arrays.copyOf(out, written), message.length, null);
+            assertArrayEquals(message, decoded);
+        }
+    }
+
+    @Test
+    public void testMatchesHuffmanCost() throws IOException {
+        // The in-place length computation must be as good as the trie
+        byte[] message = skewedBytes(5000);
+        long[] counts = Histogram.count(message);
+        HuffmanEncoder he = new HuffmanEncoder();
+        he.buildCodes(counts);
+
+        HuffmanMessageEncoder encoder = new HuffmanMessageEncoder();
+        byte[] out = new byte[HuffmanMessageEncoder.maxEncodedLength(message.length)];
+        encoder.encode(message, 0, message.length, out, 0);
+        int[] lengths = HuffmanDecoder.readLengths(new BitReader(new ByteArrayInputStream(out)));
+
+        long trieBits = 0, bits = 0;
+        for(int i = 0; i < 256; i++) {
+            if(counts[i] != 0) {
+                trieBits += counts[i] * he.codeLengths[i];
+                bits += counts[i] * lengths[i];
+            }
+        }
+        assertEquals(trieBits, bits);
+    }
+
+    @Test
+    public void testFixedTable() throws IOException {
+        byte[] sample = skewedBytes(5000);
+        int[] lengths = HuffmanBlockCompressor.codeLengths(Histogram.count(sample));
+        DecodeTable table = HuffmanBlockCompressor.checkedTable(lengths);
+        HuffmanMessageEncoder encoder = new HuffmanMessageEncoder();
+        encoder.setTable(lengths);
+
+        byte[] message = Arrays.copyOfRange(sample, 100, 200);
+        ByteBuffer src = ByteBuffer.allocateDirect(message.length);
+        src.put(message).flip();
+        ByteBuffer dst = ByteBuffer.allocate(HuffmanMessageEncoder.maxEncodedLength(message.length));
+        int written = encoder.encode(src, dst);
+        assertEquals(0, src.remaining());
+        assertEquals(written, dst.position());
+        byte[] decoded = HuffmanBlockCompressor.decodeBlock(Arrays.copyOf(dst.array(), written), message.length, table);
+        assertArrayEquals(message, decoded);
+
+        encoder.reset();
+        assertEquals(0, encoder.encode(new byte[0], 0, 0, new byte[0], 0));
+    }
+
+    @Test
+    public void testDeepCodes() throws IOException {
+        // Fibonacci counts would need codes longer than the limit
+        byte[] message = new byte[28656];
+        int pos = 0;
+        long a = 1, b = 1;
+        for(int s = 0; s < 21; s++) {
+            for(long i = 0; i < a; i++) {
+                message[pos++] = (byte) s;
+            }
+            long t = a + b;
+            a = b;
+            b = t;
+        }
+        HuffmanMessageEncoder encoder = new HuffmanMessageEncoder();
+        byte[] out = new byte[HuffmanMessageEncoder.maxEncodedLength(message.length)];
+        int written = encoder.encode(message, 0, message.length, out, 0);
+        assertArrayEquals(message, HuffmanBlockCompressor.decodeBlock(Arrays.copyOf(out, written), message.length, null));
+    }
+
+    @Test
+    public void testMissingCodeLeavesEncoderUsable() throws IOException {
+        int[] lengths = new int[256];
+        Arrays.fill(lengths, -1);
+        lengths['a'] = 1;
+        lengths['b'] = 1;
+        HuffmanMessageEncoder encoder = new HuffmanMessageEncoder();
+        encoder.setTable(lengths);
+        byte[] out = new byte[HuffmanMessageEncoder.maxEncodedLength(4)];
+        try {
+            encoder.encode("abc".getBytes("US-ASCII"), 0, 3, out, 0);
+            fail("c has no code");
+        } catch (IllegalArgumentException expected) {
+        }
+        byte[] message = "abba".getBytes("US-ASCII");
+        int written = encoder.encode(message, 0, message.length, out, 0);
+        assertArrayEquals(message, HuffmanBlockCompressor.decodeBlock(Arrays.copyOf(out, written), message.length,
+                HuffmanBlockCompressor.checkedTable(lengths)));
+    }
+}
@@ -0,0 +1,27 @@
+/**
+ * Receives a report after every encode or decode of a HuffmanEncoder or
+ * HuffmanDecoder it is set on. Calls happen on the coding thread, so
+ * they should be quick. HuffmanStats is an implementation that keeps
+ * running totals and can be watched over JMX.
+ */
+public interface HuffmanMetricsListener {
+    /**
+     * @param symbols -- number of bytes or chars encoded
+     * @param encodedBits -- bits taken by their codes, without any header
+     * @param outputBytes -- bytes of output, with the header for the streaming API
+     * @param entropy -- Shannon entropy of the input's symbol counts, in bits per symbol
+     * @param buildNanos -- time spent building the trie and codes
+     * @param encodeNanos -- time spent encoding with them
+     * @param tableReused -- true if the codes came from a dictionary instead of being built
+     */
+    void encoded(long symbols, long encodedBits, long outputBytes, double entropy,
+                 long buildNanos, long encodeNanos, boolean tableReused);
+
+    /**
+     * @param inputBytes -- bytes of encoded input consumed, with any header
+     * @param symbols -- number of bytes or chars decoded
+     * @param decodeNanos -- time spent, including reading the header
+     * @param tableReused -- true if the table came from a dictionary instead of the input
+     */
+    void decoded(long inputBytes, long symbols, long decodeNanos, boolean tableReused);
+}
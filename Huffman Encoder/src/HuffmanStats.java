@@ -0,0 +1,134 @@
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Running totals of HuffmanMetricsListener reports. Set one instance
+ * on any number of encoders and decoders, then read it directly or
+ * register() it to watch it in a JMX console.
+ */
+public class HuffmanStats implements HuffmanMetricsListener, HuffmanStatsMBean {
+    private long encodes, decodes;
+    private long symbolsIn, encodedBits, bytesOut;
+    private double entropyBits;     // entropy of each input times its symbols
+    private long builds, buildNanos, encodeNanos;
+    private long decodeBytesIn, decodeSymbols, decodeNanos;
+    private long tableHits;
+
+    @Override
+    public synchronized void encoded(long symbols, long encodedBits, long outputBytes, double entropy,
+                                     long buildNanos, long encodeNanos, boolean tableReused) {
+        encodes++;
+        symbolsIn += symbols;
+        this.encodedBits += encodedBits;
+        bytesOut += outputBytes;
+        entropyBits += entropy * symbols;
+        this.encodeNanos += encodeNanos;
+        if (tableReused) {
+            tableHits++;
+        } else {
+            builds++;
+            this.buildNanos += buildNanos;
+        }
+    }
+
+    @Override
+    public synchronized void decoded(long inputBytes, long symbols, long decodeNanos, boolean tableReused) {
+        decodes++;
+        decodeBytesIn += inputBytes;
+        decodeSymbols += symbols;
+        this.decodeNanos += decodeNanos;
+        if (tableReused) tableHits++;
+    }
+
+    @Override public synchronized long getEncodeCount() { return encodes; }
+    @Override public synchronized long getDecodeCount() { return decodes; }
+    @Override public synchronized long getBytesIn() { return symbolsIn; }
+    @Override public synchronized long getBytesOut() { return bytesOut; }
+    @Override public synchronized long getDecodeBytesIn() { return decodeBytesIn; }
+
+    @Override
+    public synchronized double getCompressionRatio() {
+        return ratio(bytesOut, symbolsIn);
+    }
+
+    @Override
+    public synchronized double getAverageCodeLength() {
+        return ratio(encodedBits, symbolsIn);
+    }
+
+    @Override
+    public synchronized double getEntropy() {
+        return ratio(entropyBits, symbolsIn);
+    }
+
+    @Override
+    public synchronized double getRedundancy() {
+        return getAverageCodeLength() - getEntropy();
+    }
+
+    @Override
+    public synchronized double getAverageTrieBuildNanos() {
+        return ratio(buildNanos, builds);
+    }
+
+    @Override
+    public synchronized double getEncodeNanosPerByte() {
+        return ratio(buildNanos + encodeNanos, symbolsIn);
+    }
+
+    @Override
+    public synchronized double getDecodeNanosPerByte() {
+        return ratio(decodeNanos, decodeSymbols);
+    }
+
+    @Override
+    public synchronized double getTableCacheHitRate() {
+        return ratio(tableHits, encodes + decodes);
+    }
+
+    @Override
+    public synchronized void reset() {
+        encodes = decodes = 0;
+        symbolsIn = encodedBits = bytesOut = 0;
+        entropyBits = 0;
+        builds = buildNanos = encodeNanos = 0;
+        decodeBytesIn = decodeSymbols = decodeNanos = 0;
+        tableHits = 0;
+    }
+
+    /**
+     * Registers these stats with the platform MBean server.
+     *
+     * @param name -- distinguishes this instance from others
+     * @return the name it was registered under
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = new ObjectName("huffman:type=HuffmanStats,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    /**
+     * Shannon entropy of a symbol distribution.
+     *
+     * @param counts -- number of occurrences of each symbol
+     * @return bits per symbol, 0 for no symbols
+     */
+    static double entropy(long[] counts) {
+        long total = 0;
+        for (long c : counts) total += c;
+        double bits = 0;
+        for (long c : counts) {
+            if (c > 0) {
+                double p = (double) c / total;
+                bits -= p * Math.log(p);
+            }
+        }
+        return bits / Math.log(2);
+    }
+
+    private static double ratio(double a, double b) {
+        return (b == 0) ? 0 : a / b;
+    }
+}
@@ -0,0 +1,26 @@
+/**
+ * Management interface of HuffmanStats. Ratios are 0 until there is
+ * something to divide by.
+ */
+public interface HuffmanStatsMBean {
+    long getEncodeCount();
+    long getDecodeCount();
+    long getBytesIn();
+    long getBytesOut();
+    /** Encoded bytes read by decoders */
+    long getDecodeBytesIn();
+    /** Output bytes over input bytes of everything encoded */
+    double getCompressionRatio();
+    /** Average code length in bits per symbol */
+    double getAverageCodeLength();
+    /** Average entropy of the inputs in bits per symbol, the best any code could do */
+    double getEntropy();
+    /** Average code length minus entropy; grows when the data drifts from a dictionary */
+    double getRedundancy();
+    double getAverageTrieBuildNanos();
+    double getEncodeNanosPerByte();
+    double getDecodeNanosPerByte();
+    /** Fraction of encodes and decodes that used a dictionary's table */
+    double getTableCacheHitRate();
+    void reset();
+}
@@ -0,0 +1,112 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+import javax.management.ObjectName;
+
+public class HuffmanStatsTests {
+
+    @Test
+    public void entropy() {
+        assertEquals(0, HuffmanStats.entropy(new long[256]), 1e-9);
+        assertEquals(1, HuffmanStats.entropy(new long[]{5, 5}), 1e-9);
+        long[] uniform = new long[256];
+        Arrays.fill(uniform, 3);
+        assertEquals(8, HuffmanStats.entropy(uniform), 1e-9);
+    }
+
+    @Test
+    public void stringEncodeAndDecode() {
+        HuffmanStats stats = new HuffmanStats();
+        HuffmanEncoder he = new HuffmanEncoder();
+        he.setMetricsListener(stats);
+        he.encode("ABRACADABRA!");
+        assertEquals(1, stats.getEncodeCount());
+        assertEquals(12, stats.getBytesIn());
+        assertEquals(4, stats.getBytesOut());
+        assertEquals(28.0 / 12, stats.getAverageCodeLength(), 1e-9);
+        // Huffman codes are within a bit of the entropy
+        assertTrue(stats.getEntropy() <= stats.getAverageCodeLength());
+        assertTrue(stats.getRedundancy() < 1);
+        assertEquals(0, stats.getTableCacheHitRate(), 0);
+
+        HuffmanDecoder hd = new HuffmanDecoder();
+        hd.setMetricsListener(stats);
+        hd.parseTree(he.getEncodedTree());
+        hd.decode(he.getEncodedText());
+        assertEquals(1, stats.getDecodeCount());
+        assertEquals(4, stats.getDecodeBytesIn());
+
+        stats.reset();
+        assertEquals(0, stats.getEncodeCount());
+        assertEquals(0, stats.getAverageCodeLength(), 0);
+    }
+
+    @Test
+    public void streams() throws Exception {
+        byte[] data = new byte[50000];
+        Random RNG = new Random(3);
+        for(int i = 0; i < data.length; i++) {
+            data[i] = (byte) (RNG.nextInt(256) & RNG.nextInt(256));
+        }
+        HuffmanStats stats = new HuffmanStats();
+        HuffmanEncoder he = new HuffmanEncoder();
+        he.setMetricsListener(stats);
+        he.count(new ByteArrayInputStream(data));
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        long written = he.compress(new ByteArrayInputStream(data), compressed);
+        assertEquals(data.length, stats.getBytesIn());
+        assertEquals(written, stats.getBytesOut());
+        assertEquals((double) written / data.length, stats.getCompressionRatio(), 1e-9);
+        assertTrue(stats.getRedundancy() >= 0 && stats.getRedundancy() < 1);
+
+        HuffmanDecoder hd = new HuffmanDecoder();
+        hd.setMetricsListener(stats);
+        hd.decompress(new ByteArrayInputStream(compressed.toByteArray()), new ByteArrayOutputStream());
+        assertEquals(written, stats.getDecodeBytesIn());
+        assertTrue(stats.getDecodeNanosPerByte() > 0);
+    }
+
+    @Test
+    public void emptyStreamIsCounted() throws Exception {
+        HuffmanEncoder he = new HuffmanEncoder();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        long written = he.compress(new ByteArrayInputStream(new byte[0]), compressed);
+
+        HuffmanStats stats = new HuffmanStats();
+        HuffmanDecoder hd = new HuffmanDecoder();
+        hd.setMetricsListener(stats);
+        assertEquals(0, hd.decompress(new ByteArrayInputStream(compressed.toByteArray()), new ByteArrayOutputStream()));
+        assertEquals(1, stats.getDecodeCount());
+        assertEquals(written, stats.getDecodeBytesIn());
+    }
+
+    @Test
+    public void dictionaryCountsAsCacheHit() throws Exception {
+        HuffmanDictionary d = HuffmanDictionary.train(400, Arrays.asList("hello, world".getBytes("US-ASCII")));
+        HuffmanStats stats = new HuffmanStats();
+        HuffmanEncoder he = new HuffmanEncoder();
+        he.setMetricsListener(stats);
+        he.encode("built");
+        he.setDictionary(d);
+        he.encode("hello");
+        assertEquals(0.5, stats.getTableCacheHitRate(), 1e-9);
+        assertTrue(stats.getEntropy() > 0);
+    }
+
+    @Test
+    public void jmx() throws Exception {
+        HuffmanStats stats = new HuffmanStats();
+        ObjectName name = stats.register("tests");
+        HuffmanEncoder he = new HuffmanEncoder();
+        he.setMetricsListener(stats);
+        he.encode("ABRACADABRA!");
+        assertEquals(1L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "EncodeCount"));
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+    }
+}
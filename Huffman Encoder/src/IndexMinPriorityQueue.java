@@ -0,0 +1,171 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Min priority queue of the integers 0 to capacity - 1, each with a key,
+ * whose keys can be lowered or removed while queued. Graph searches use
+ * the vertex number as the index and lower its distance in place, so
+ * the heap never holds more than one entry a vertex.
+ *
+ * The binary heap holds indices; position[] maps each index back to its
+ * place in the heap, so any entry is found in constant time.
+ */
+public class IndexMinPriorityQueue<I extends Comparable<I>> {
+    private final int[] heap;       // heap[k] = index at heap position k
+    private final int[] position;   // position[i] = heap position of index i, or -1
+    private final I[] keys;         // keys[i] = key of index i while queued
+    private int N;                  // number of entries in the heap
+
+    /**
+     * @param capacity -- indices run from 0 to capacity - 1
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public IndexMinPriorityQueue(int capacity) {
+        if (capacity < 0) throw new IllegalArgumentException("Capacity must not be negative");
+        heap = new int[capacity];
+        position = new int[capacity];
+        keys = (I[]) new Comparable[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    /**
+     * @throws IllegalArgumentException if index is already queued
+     */
+    public void insert(int index, I key) {
+        check(index);
+        if (position[index] >= 0) throw new IllegalArgumentException("Index " + index + " is already in the queue");
+        keys[index] = key;
+        heap[N] = index;
+        position[index] = N;
+        swim(N++);
+    }
+
+    /**
+     * Removes the entry with the lowest key.
+     *
+     * @return its index
+     * @throws NoSuchElementException if the queue is empty
+     */
+    public int delNext() {
+        if (N == 0) throw new NoSuchElementException();
+        int min = heap[0];
+        removeAt(0);
+        return min;
+    }
+
+    /**
+     * @return index of the entry with the lowest key
+     * @throws NoSuchElementException if the queue is empty
+     */
+    public int minIndex() {
+        if (N == 0) throw new NoSuchElementException();
+        return heap[0];
+    }
+
+    /**
+     * @return the lowest key
+     * @throws NoSuchElementException if the queue is empty
+     */
+    public I minKey() {
+        if (N == 0) throw new NoSuchElementException();
+        return keys[heap[0]];
+    }
+
+    public boolean contains(int index) {
+        check(index);
+        return position[index] >= 0;
+    }
+
+    /**
+     * @return key of a queued index
+     * @throws NoSuchElementException if index isn't queued
+     */
+    public I keyOf(int index) {
+        checkQueued(index);
+        return keys[index];
+    }
+
+    /**
+     * @param key -- new key, no greater than the current one
+     * @throws NoSuchElementException if index isn't queued
+     * @throws IllegalArgumentException if key is greater than the current key
+     */
+    public void decreaseKey(int index, I key) {
+        checkQueued(index);
+        if (key.compareTo(keys[index]) > 0) throw new IllegalArgumentException("Key is greater than the current key");
+        keys[index] = key;
+        swim(position[index]);
+    }
+
+    /**
+     * Removes an index from the queue.
+     *
+     * @throws NoSuchElementException if index isn't queued
+     */
+    public void delete(int index) {
+        checkQueued(index);
+        removeAt(position[index]);
+    }
+
+    public int size() {
+        return N;
+    }
+
+    public boolean isEmpty() {
+        return N == 0;
+    }
+
+    /**
+     * Fills heap position k with the last entry, which may belong above or below it.
+     */
+    private void removeAt(int k) {
+        int index = heap[k];
+        N--;
+        if (k != N) {
+            int last = heap[N];
+            move(last, k);
+            swim(k);
+            if (position[last] == k) sink(k);
+        }
+        position[index] = -1;
+        keys[index] = null;
+    }
+
+    private void swim(int k) {
+        int index = heap[k];
+        I key = keys[index];
+        // Move parents down into the hole until the key fits
+        while (k > 0 && key.compareTo(keys[heap[(k - 1) / 2]]) < 0) {
+            move(heap[(k - 1) / 2], k);
+            k = (k - 1) / 2;
+        }
+        move(index, k);
+    }
+
+    private void sink(int k) {
+        int index = heap[k];
+        I key = keys[index];
+        while (2 * k + 1 < N) {
+            int child = 2 * k + 1;
+            if (child + 1 < N && keys[heap[child + 1]].compareTo(keys[heap[child]]) < 0) child++;
+            if (keys[heap[child]].compareTo(key) >= 0) break;
+            move(heap[child], k);
+            k = child;
+        }
+        move(index, k);
+    }
+
+    private void move(int index, int k) {
+        heap[k] = index;
+        position[index] = k;
+    }
+
+    private void check(int index) {
+        if (index < 0 || index >= heap.length) throw new IndexOutOfBoundsException("Index " + index);
+    }
+
+    private void checkQueued(int index) {
+        check(index);
+        if (position[index] < 0) throw new NoSuchElementException("Index " + index + " is not in the queue");
+    }
+}
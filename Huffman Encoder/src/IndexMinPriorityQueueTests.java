@@ -0,0 +1,112 @@
+import static org.junit.Assert.*;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+public class IndexMinPriorityQueueTests {
+
+    @Test
+    public void testInsertDelNext() {
+        IndexMinPriorityQueue<Double> pq = new IndexMinPriorityQueue<>(5);
+        pq.insert(3, 0.5);
+        pq.insert(0, 2.0);
+        pq.insert(4, 0.25);
+        assertEquals(3, pq.size());
+        assertEquals(4, pq.minIndex());
+        assertEquals((Double) 0.25, pq.minKey());
+        assertEquals(4, pq.delNext());
+        assertEquals(3, pq.delNext());
+        assertEquals(0, pq.delNext());
+        assertTrue(pq.isEmpty());
+    }
+
+    @Test
+    public void testDecreaseKey() {
+        IndexMinPriorityQueue<Integer> pq = new IndexMinPriorityQueue<>(4);
+        pq.insert(0, 10);
+        pq.insert(1, 20);
+        pq.insert(2, 30);
+        pq.decreaseKey(2, 5);
+        assertEquals((Integer) 5, pq.keyOf(2));
+        assertEquals(2, pq.delNext());
+        pq.decreaseKey(1, 10);
+        assertEquals(2, pq.size());
+        assertEquals((Integer) 10, pq.minKey());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecreaseKeyToGreater() {
+        IndexMinPriorityQueue<Integer> pq = new IndexMinPriorityQueue<>(4);
+        pq.insert(1, 10);
+        pq.decreaseKey(1, 11);
+    }
+
+    @Test
+    public void testContainsAndDelete() {
+        IndexMinPriorityQueue<Integer> pq = new IndexMinPriorityQueue<>(10);
+        for (int i = 0; i < 10; i++) pq.insert(i, 100 - i);
+        assertTrue(pq.contains(9));
+        pq.delete(9);
+        pq.delete(0);
+        pq.delete(4);
+        assertFalse(pq.contains(9));
+        assertFalse(pq.contains(4));
+        assertEquals(7, pq.size());
+        int[] expected = {8, 7, 6, 5, 3, 2, 1};
+        for (int e : expected) assertEquals(e, pq.delNext());
+        // A deleted index can be queued again
+        pq.insert(9, 1);
+        assertEquals(9, pq.delNext());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDoubleInsert() {
+        IndexMinPriorityQueue<Integer> pq = new IndexMinPriorityQueue<>(2);
+        pq.insert(1, 1);
+        pq.insert(1, 2);
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testDeleteAbsent() {
+        new IndexMinPriorityQueue<Integer>(3).delete(1);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testIndexOutOfRange() {
+        new IndexMinPriorityQueue<Integer>(3).insert(3, 0);
+    }
+
+    @Test
+    public void testRandomOperations() {
+        // Keys are made unique by the index so a TreeSet can act as the reference
+        int V = 200;
+        Random RNG = new Random(1234);
+        IndexMinPriorityQueue<Long> pq = new IndexMinPriorityQueue<>(V);
+        TreeSet<Long> reference = new TreeSet<>();
+        long[] key = new long[V];
+        for (int op = 0; op < 20000; op++) {
+            int i = RNG.nextInt(V);
+            int choice = RNG.nextInt(4);
+            if (!pq.contains(i)) {
+                key[i] = (long) RNG.nextInt(1 << 20) * V + i;
+                pq.insert(i, key[i]);
+                reference.add(key[i]);
+            } else if (choice == 0) {
+                pq.delete(i);
+                reference.remove(key[i]);
+            } else if (choice == 1) {
+                reference.remove(key[i]);
+                key[i] -= (long) RNG.nextInt(1000) * V;
+                pq.decreaseKey(i, key[i]);
+                reference.add(key[i]);
+            } else if (choice == 2 && !pq.isEmpty()) {
+                long min = reference.pollFirst();
+                assertEquals((Long) min, pq.minKey());
+                assertEquals((int) (((min % V) + V) % V), pq.delNext());
+            }
+            assertEquals(reference.size(), pq.size());
+        }
+    }
+}
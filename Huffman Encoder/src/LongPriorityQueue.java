@@ -0,0 +1,28 @@
+/**
+ * Priority queue of int values ordered by a long priority, for callers
+ * that would otherwise box both into a Comparable for PriorityQueue.
+ * The value is typically an index into the caller's own arrays.
+ */
+public interface LongPriorityQueue {
+    /**
+     * @param priority -- lower priorities come out first
+     * @param value -- value returned by delNext()
+     */
+    void insert(long priority, int value);
+
+    /**
+     * Removes the value with the lowest priority. Ties come out in no particular order.
+     *
+     * @return the value
+     * @throws java.util.NoSuchElementException if the queue is empty
+     */
+    int delNext();
+
+    /**
+     * @return the lowest priority in the queue
+     * @throws java.util.NoSuchElementException if the queue is empty
+     */
+    long minPriority();
+
+    int size();
+}
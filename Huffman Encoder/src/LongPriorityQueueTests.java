@@ -0,0 +1,129 @@
+import static org.junit.Assert.*;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LongPriorityQueueTests {
+
+    private static LongPriorityQueue[] queues() {
+        return new LongPriorityQueue[]{new DaryLongPriorityQueue(), new RadixLongPriorityQueue()};
+    }
+
+    @Test
+    public void testSingleInsert() {
+        for (LongPriorityQueue pq : queues()) {
+            pq.insert(10, 7);
+            assertEquals(1, pq.size());
+            assertEquals(10, pq.minPriority());
+            assertEquals(7, pq.delNext());
+            assertEquals(0, pq.size());
+        }
+    }
+
+    @Test
+    public void testReverseInsert() {
+        for (LongPriorityQueue pq : queues()) {
+            for (int i = 100; i >= 0; i--) pq.insert(i, -i);
+            for (int i = 0; i <= 100; i++) {
+                assertEquals(i, pq.minPriority());
+                assertEquals(-i, pq.delNext());
+            }
+        }
+    }
+
+    @Test
+    public void testRandomInsert() {
+        for (LongPriorityQueue pq : queues()) {
+            Random RNG = new Random(1234);
+            int N = 10000;
+            long[] priorities = new long[N];
+            for (int i = 0; i < N; i++) {
+                // The value carries the priority so the order can be checked
+                int p = RNG.nextInt(1 << 20);
+                priorities[i] = p;
+                pq.insert(p, p);
+            }
+            Arrays.sort(priorities);
+            for (int i = 0; i < N; i++) {
+                assertEquals(priorities[i], pq.minPriority());
+                assertEquals((int) priorities[i], pq.delNext());
+            }
+        }
+    }
+
+    @Test
+    public void testDupInsert() {
+        for (LongPriorityQueue pq : queues()) {
+            for (int i = 0; i < 5; i++) pq.insert(42, i);
+            boolean[] seen = new boolean[5];
+            for (int i = 0; i < 5; i++) {
+                assertEquals(42, pq.minPriority());
+                seen[pq.delNext()] = true;
+            }
+            for (boolean b : seen) assertTrue(b);
+        }
+    }
+
+    @Test
+    public void testNegativeAndExtremePriorities() {
+        for (LongPriorityQueue pq : queues()) {
+            long[] priorities = {5, -3, Long.MAX_VALUE, Long.MIN_VALUE, 0, -1, 1L << 40};
+            for (int i = 0; i < priorities.length; i++) pq.insert(priorities[i], i);
+            long[] sorted = priorities.clone();
+            Arrays.sort(sorted);
+            for (long p : sorted) {
+                assertEquals(p, pq.minPriority());
+                assertEquals(p, priorities[pq.delNext()]);
+            }
+        }
+    }
+
+    @Test
+    public void testInterleavedMonotone() {
+        // Dijkstra-like use: new priorities are never below the last removed
+        for (LongPriorityQueue pq : queues()) {
+            Random RNG = new Random(99);
+            java.util.PriorityQueue<Long> reference = new java.util.PriorityQueue<>();
+            long last = 0;
+            pq.insert(0, 0);
+            reference.add(0L);
+            for (int i = 0; i < 20000; i++) {
+                if (pq.size() > 0 && RNG.nextInt(3) == 0) {
+                    long expected = reference.poll();
+                    assertEquals(expected, pq.minPriority());
+                    pq.delNext();
+                    last = expected;
+                } else {
+                    long p = last + RNG.nextInt(1000);
+                    pq.insert(p, i);
+                    reference.add(p);
+                }
+            }
+            while (pq.size() > 0) {
+                assertEquals((long) reference.poll(), pq.minPriority());
+                pq.delNext();
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRadixRejectsLowerPriority() {
+        RadixLongPriorityQueue pq = new RadixLongPriorityQueue();
+        pq.insert(10, 0);
+        pq.insert(20, 1);
+        pq.delNext();
+        pq.insert(9, 2);
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testDaryEmpty() {
+        new DaryLongPriorityQueue().delNext();
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testRadixEmpty() {
+        new RadixLongPriorityQueue().minPriority();
+    }
+}
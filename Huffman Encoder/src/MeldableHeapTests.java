@@ -0,0 +1,133 @@
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class MeldableHeapTests {
+
+    @Test
+    public void testBackendsSortRandomInput() {
+        for (PriorityQueueBackend backend : PriorityQueueBackend.values()) {
+            PriorityQueue<Integer> pq = backend.create();
+            java.util.PriorityQueue<Integer> reference = new java.util.PriorityQueue<>();
+            Random RNG = new Random(1234);
+            for (int i = 0; i < 5000; i++) {
+                // Mix inserts and removals so trees of many shapes get consolidated
+                if (RNG.nextInt(3) == 0) {
+                    assertEquals(backend.toString(), reference.poll(), pq.delNext());
+                } else {
+                    int v = RNG.nextInt(1000);
+                    pq.insert(v);
+                    reference.add(v);
+                }
+                assertEquals(reference.size(), pq.size());
+            }
+            while (!reference.isEmpty()) assertEquals(reference.poll(), pq.delNext());
+            assertNull(pq.delNext());
+        }
+    }
+
+    @Test
+    public void testPairingDecreaseKey() {
+        PairingHeap<Integer> pq = new PairingHeap<>();
+        java.util.PriorityQueue<Integer> reference = new java.util.PriorityQueue<>();
+        List<PairingHeap.Entry<Integer>> entries = new ArrayList<>();
+        Random RNG = new Random(7);
+        for (int i = 0; i < 2000; i++) {
+            int v = RNG.nextInt(1 << 20);
+            entries.add(pq.add(v));
+            reference.add(v);
+        }
+        // Remove some first so the entries sit at various depths
+        for (int i = 0; i < 100; i++) assertEquals(reference.poll(), pq.delNext());
+        for (PairingHeap.Entry<Integer> e : entries) {
+            if (!reference.contains(e.item()) || RNG.nextBoolean()) continue;
+            reference.remove(e.item());
+            int lower = e.item() - RNG.nextInt(1 << 20);
+            pq.decreaseKey(e, lower);
+            reference.add(lower);
+        }
+        assertEquals(reference.size(), pq.size());
+        while (!reference.isEmpty()) assertEquals(reference.poll(), pq.delNext());
+    }
+
+    @Test
+    public void testFibonacciDecreaseKey() {
+        FibonacciHeap<Integer> pq = new FibonacciHeap<>();
+        java.util.PriorityQueue<Integer> reference = new java.util.PriorityQueue<>();
+        List<FibonacciHeap.Entry<Integer>> entries = new ArrayList<>();
+        Random RNG = new Random(7);
+        for (int i = 0; i < 2000; i++) {
+            int v = RNG.nextInt(1 << 20);
+            entries.add(pq.add(v));
+            reference.add(v);
+        }
+        for (int i = 0; i < 100; i++) assertEquals(reference.poll(), pq.delNext());
+        // Several rounds so cascading cuts reach marked parents
+        for (int round = 0; round < 3; round++) {
+            for (FibonacciHeap.Entry<Integer> e : entries) {
+                if (!reference.contains(e.item()) || RNG.nextInt(4) != 0) continue;
+                reference.remove(e.item());
+                int lower = e.item() - RNG.nextInt(1000);
+                pq.decreaseKey(e, lower);
+                reference.add(lower);
+            }
+            for (int i = 0; i < 50; i++) assertEquals(reference.poll(), pq.delNext());
+        }
+        assertEquals(reference.size(), pq.size());
+        while (!reference.isEmpty()) assertEquals(reference.poll(), pq.delNext());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecreaseKeyToGreater() {
+        FibonacciHeap<Integer> pq = new FibonacciHeap<>();
+        pq.decreaseKey(pq.add(5), 6);
+    }
+
+    @Test
+    public void testMeld() {
+        PairingHeap<Integer> a = new PairingHeap<>(), b = new PairingHeap<>();
+        FibonacciHeap<Integer> c = new FibonacciHeap<>(), d = new FibonacciHeap<>();
+        for (int i = 0; i < 100; i += 2) {
+            a.insert(i);
+            c.insert(i);
+        }
+        c.delNext();
+        PairingHeap.Entry<Integer> pe = null;
+        FibonacciHeap.Entry<Integer> fe = null;
+        for (int i = 1; i < 100; i += 2) {
+            pe = b.add(i);
+            fe = d.add(i);
+        }
+        a.meld(b);
+        c.meld(d);
+        assertEquals(0, b.size());
+        assertEquals(0, d.size());
+        assertEquals(100, a.size());
+        assertEquals(99, c.size());
+        // Entries from the melded heap still work
+        a.decreaseKey(pe, -1);
+        c.decreaseKey(fe, -1);
+        assertEquals((Integer) (-1), a.delNext());
+        assertEquals((Integer) (-1), c.delNext());
+        for (int i = 0; i < 99; i++) assertEquals((Integer) i, a.delNext());
+        for (int i = 1; i < 99; i++) assertEquals((Integer) i, c.delNext());
+        assertNull(a.delNext());
+        assertNull(c.delNext());
+    }
+
+    @Test
+    public void testBuildTrieWithEachBackend() {
+        String text = "she sells sea shells by the sea shore, the shells she sells are sea shells for sure";
+        for (PriorityQueueBackend backend : PriorityQueueBackend.values()) {
+            HuffmanEncoder he = new HuffmanEncoder();
+            he.setQueueBackend(backend);
+            he.encode(text);
+            HuffmanDecoder hd = new HuffmanDecoder();
+            hd.parseTree(he.getEncodedTree());
+            assertEquals(text, hd.decode(he.getEncodedText()));
+        }
+    }
+}
@@ -1,5 +1,8 @@
 import static org.junit.Assert.*;
+import java.util.ArrayList;
 import java.util.Arrays; 
+import java.util.Collections;
+import java.util.List;
 import java.util.Random;
 
 import org.junit.Test;
@@ -129,4 +132,63 @@ public class MinHeapPriorityQueueTests {
 		assertEquals((Integer)5, pq.delNext());
 		assertEquals((Integer)6, pq.delNext());
 	}
+
+	@Test
+	public void testHeapifyArray() {
+		Integer[] values = {5, 11, 8, 4, 3, 15, 0, 7};
+		MinHeapPriorityQueue<Integer> pq = new MinHeapPriorityQueue<>(values);
+		assertEquals("[0,3,5,4,11,15,8,7]", pq.toString());
+		Arrays.sort(values);
+		for(int i = 0; i < values.length; i++) {
+			assertEquals(values[i], pq.delNext());
+		}
+		assertEquals(0, pq.size());
+	}
+
+	@Test
+	public void testHeapifyEmpty() {
+		MinHeapPriorityQueue<Integer> pq = new MinHeapPriorityQueue<>(new Integer[0]);
+		assertNull(pq.delNext());
+		pq.insert(3);
+		assertEquals((Integer)3, pq.delNext());
+	}
+
+	@Test
+	public void testHeapifyCollectionRandom() {
+		Random RNG = new Random(1234);
+		List<Integer> values = new ArrayList<>();
+		for(int i = 0; i < 1000; i++) {
+			values.add(RNG.nextInt(100));
+		}
+		MinHeapPriorityQueue<Integer> pq = new MinHeapPriorityQueue<>(values);
+		Collections.sort(values);
+		for(int i = 0; i < values.size(); i++) {
+			assertEquals(values.get(i), pq.delNext());
+		}
+	}
+
+	@Test
+	public void testInsertAll() {
+		Random RNG = new Random(99);
+		// Batches both smaller and larger than what's already queued
+		int[] batches = {0, 1, 7, 100, 3, 1000, 2};
+		MinHeapPriorityQueue<Integer> pq = new MinHeapPriorityQueue<>();
+		java.util.PriorityQueue<Integer> reference = new java.util.PriorityQueue<>();
+		for(int b : batches) {
+			List<Integer> batch = new ArrayList<>();
+			for(int i = 0; i < b; i++) {
+				batch.add(RNG.nextInt());
+			}
+			pq.insertAll(batch);
+			reference.addAll(batch);
+			int extra = RNG.nextInt();
+			pq.insert(extra);
+			reference.add(extra);
+			assertEquals(reference.poll(), pq.delNext());
+		}
+		assertEquals(reference.size(), pq.size());
+		while(!reference.isEmpty()) {
+			assertEquals(reference.poll(), pq.delNext());
+		}
+	}
 }
@@ -0,0 +1,142 @@
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread-safe PriorityQueue with relaxed ordering (a MultiQueue).
+ *
+ * Items are spread over several MinHeapPriorityQueues, each behind its
+ * own lock. insert() adds to a random heap; delNext() looks at the
+ * smallest item of two random heaps and takes the smaller. Threads
+ * rarely want the same lock, and tryLock() moves on to other heaps
+ * instead of waiting, so throughput grows with the number of threads.
+ *
+ * The price is that delNext() returns one of the smallest items, not
+ * always the smallest: with q heaps, the item returned is on average
+ * about q places from the front. Each item still comes out exactly once.
+ * With one heap the order is strict.
+ */
+public class MultiQueuePriorityQueue<I extends Comparable<I>> implements PriorityQueue<I> {
+    /** Heaps per thread; more heaps mean less contention but looser order */
+    static final int QUEUES_PER_THREAD = 2;
+
+    private final Heap<I>[] heaps;
+    private final AtomicInteger size = new AtomicInteger();
+
+    private static class Heap<I extends Comparable<I>> {
+        final ReentrantLock lock = new ReentrantLock();
+        final MinHeapPriorityQueue<I> queue = new MinHeapPriorityQueue<>();
+        // Smallest item, readable without the lock, or null if empty
+        volatile I top;
+    }
+
+    /**
+     * A queue sized for every available processor.
+     */
+    public MultiQueuePriorityQueue() {
+        this(QUEUES_PER_THREAD * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param queues -- number of heaps, at least 1
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public MultiQueuePriorityQueue(int queues) {
+        if (queues < 1) throw new IllegalArgumentException("Need at least one heap");
+        heaps = new Heap[queues];
+        for (int i = 0; i < queues; i++) heaps[i] = new Heap<>();
+    }
+
+    @Override
+    public void insert(I item) {
+        // Counted first, so size() never drops below the number of items a delNext() can find
+        size.incrementAndGet();
+        ThreadLocalRandom rng = ThreadLocalRandom.current();
+        while (true) {
+            Heap<I> h = heaps[rng.nextInt(heaps.length)];
+            if (h.lock.tryLock()) {
+                try {
+                    h.queue.insert(item);
+                    h.top = h.queue.peek();
+                } finally {
+                    h.lock.unlock();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes one of the smallest items.
+     *
+     * @return the item, or null if the queue is empty
+     */
+    @Override
+    public I delNext() {
+        ThreadLocalRandom rng = ThreadLocalRandom.current();
+        int misses = 0;
+        while (size.get() > 0) {
+            Heap<I> a = heaps[rng.nextInt(heaps.length)];
+            Heap<I> b = heaps[rng.nextInt(heaps.length)];
+            Heap<I> h = smaller(a, b);
+            if (h != null && h.lock.tryLock()) {
+                try {
+                    I item = h.queue.delNext();
+                    if (item != null) {
+                        h.top = h.queue.peek();
+                        size.decrementAndGet();
+                        return item;
+                    }
+                } finally {
+                    h.lock.unlock();
+                }
+            }
+            // With few items left, random picks keep finding empty heaps
+            if (++misses >= heaps.length) {
+                I item = sweep();
+                if (item != null) return item;
+                misses = 0;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the number of items, which may already be out of date
+     */
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * @return whichever heap has the smaller top, or null if both look empty
+     */
+    private Heap<I> smaller(Heap<I> a, Heap<I> b) {
+        I ta = a.top, tb = b.top;
+        if (ta == null) return (tb == null) ? null : b;
+        if (tb == null) return a;
+        return (tb.compareTo(ta) < 0) ? b : a;
+    }
+
+    /**
+     * Takes from the first heap that has anything, waiting for each lock.
+     */
+    private I sweep() {
+        for (Heap<I> h : heaps) {
+            if (h.top == null) continue;
+            h.lock.lock();
+            try {
+                I item = h.queue.delNext();
+                if (item != null) {
+                    h.top = h.queue.peek();
+                    size.decrementAndGet();
+                    return item;
+                }
+            } finally {
+                h.lock.unlock();
+            }
+        }
+        return null;
+    }
+}
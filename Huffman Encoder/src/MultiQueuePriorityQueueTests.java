@@ -0,0 +1,106 @@
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class MultiQueuePriorityQueueTests {
+
+    @Test
+    public void testSingleHeapIsStrict() {
+        MultiQueuePriorityQueue<Integer> pq = new MultiQueuePriorityQueue<>(1);
+        int[] values = new int[1000];
+        Random RNG = new Random(1234);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = RNG.nextInt();
+            pq.insert(values[i]);
+        }
+        Arrays.sort(values);
+        for (int v : values) assertEquals((Integer) v, pq.delNext());
+        assertNull(pq.delNext());
+    }
+
+    @Test
+    public void testEmpty() {
+        MultiQueuePriorityQueue<Integer> pq = new MultiQueuePriorityQueue<>(8);
+        assertNull(pq.delNext());
+        assertEquals(0, pq.size());
+    }
+
+    @Test
+    public void testRelaxedOrderSingleThread() {
+        // Every item comes out once, and close to its place in sorted order
+        int queues = 8, N = 10000;
+        MultiQueuePriorityQueue<Integer> pq = new MultiQueuePriorityQueue<>(queues);
+        for (int i = 0; i < N; i++) pq.insert(i);
+        assertEquals(N, pq.size());
+        boolean[] seen = new boolean[N];
+        long displacement = 0;
+        for (int i = 0; i < N; i++) {
+            int v = pq.delNext();
+            assertFalse(seen[v]);
+            seen[v] = true;
+            displacement += Math.abs(v - i);
+        }
+        assertNull(pq.delNext());
+        assertTrue("average displacement " + displacement / N, displacement / N < 10 * queues);
+    }
+
+    @Test
+    public void testConcurrentProducersConsumers() throws InterruptedException {
+        final int threads = 4, perThread = 20000;
+        final MultiQueuePriorityQueue<Integer> pq = new MultiQueuePriorityQueue<>(2 * threads);
+        final ConcurrentLinkedQueue<Integer> taken = new ConcurrentLinkedQueue<>();
+        final AtomicInteger producersLeft = new AtomicInteger(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int base = t * perThread;
+            workers.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < perThread; i++) pq.insert(base + i);
+                    producersLeft.decrementAndGet();
+                }
+            });
+            workers.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    while (true) {
+                        Integer v = pq.delNext();
+                        if (v != null) {
+                            taken.add(v);
+                        } else if (producersLeft.get() == 0 && pq.size() == 0) {
+                            return;
+                        }
+                    }
+                }
+            });
+        }
+        for (Thread w : workers) w.start();
+        start.countDown();
+        for (Thread w : workers) w.join();
+
+        List<Integer> all = new ArrayList<>(taken);
+        Collections.sort(all);
+        assertEquals(threads * perThread, all.size());
+        for (int i = 0; i < all.size(); i++) assertEquals((Integer) i, all.get(i));
+        assertEquals(0, pq.size());
+    }
+}
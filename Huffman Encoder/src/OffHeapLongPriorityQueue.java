@@ -0,0 +1,188 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.NoSuchElementException;
+
+/**
+ * Priority queue of (long priority, long payload) pairs kept outside the
+ * Java heap, in a direct ByteBuffer. The garbage collector sees one
+ * buffer however many entries there are, so a frontier of tens of
+ * millions of entries adds nothing to GC pauses, and memory use is
+ * ENTRY_BYTES an entry of capacity.
+ *
+ * Entries form a 4-ary min-heap, as in DaryLongPriorityQueue; each entry
+ * is a priority followed by its payload. Capacity is managed explicitly:
+ * the buffer doubles when full, but never past the maximum given to the
+ * constructor, and trimToSize() moves the entries to a smaller buffer.
+ * A replaced buffer's memory is only freed once the garbage collector
+ * finds it unreachable; there is no way to release it on demand.
+ *
+ * A ByteBuffer rather than a MemorySegment because on Java 17, the
+ * project's language level, the foreign memory API is still an incubator
+ * module. One ByteBuffer caps the queue at MAX_CAPACITY entries.
+ */
+public class OffHeapLongPriorityQueue {
+    static final int ENTRY_BYTES = 16;
+    static final int ARITY = 4;
+    /** Most entries a single ByteBuffer can address */
+    public static final int MAX_CAPACITY = Integer.MAX_VALUE / ENTRY_BYTES;
+
+    private final int maxCapacity;
+    private ByteBuffer heap;
+    private int N;      // number of entries in the heap
+
+    /**
+     * @param capacity -- entries to make room for up front
+     */
+    public OffHeapLongPriorityQueue(int capacity) {
+        this(capacity, MAX_CAPACITY);
+    }
+
+    /**
+     * @param capacity -- entries to make room for up front
+     * @param maxCapacity -- most entries the queue may ever hold, at most MAX_CAPACITY
+     */
+    public OffHeapLongPriorityQueue(int capacity, int maxCapacity) {
+        if (maxCapacity < 1 || maxCapacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Maximum capacity must be 1 to " + MAX_CAPACITY);
+        }
+        if (capacity < 0 || capacity > maxCapacity) {
+            throw new IllegalArgumentException("Capacity must be 0 to " + maxCapacity);
+        }
+        this.maxCapacity = maxCapacity;
+        heap = allocate(Math.max(capacity, 1));
+    }
+
+    /**
+     * @throws IllegalStateException if the queue holds maxCapacity entries
+     */
+    public void insert(long priority, long payload) {
+        if (N == capacity()) {
+            if (N == maxCapacity) throw new IllegalStateException("Queue is full at " + maxCapacity + " entries");
+            ensureCapacity((int) Math.min(2L * N, maxCapacity));
+        }
+        int hole = N++;
+        // Sift up by moving parents down into the hole
+        while (hole > 0) {
+            int parent = (hole - 1) / ARITY;
+            long p = priority(parent);
+            if (p <= priority) break;
+            put(hole, p, payload(parent));
+            hole = parent;
+        }
+        put(hole, priority, payload);
+    }
+
+    /**
+     * Removes the entry with the lowest priority.
+     *
+     * @return its payload
+     * @throws NoSuchElementException if the queue is empty
+     */
+    public long delNext() {
+        if (N == 0) throw new NoSuchElementException();
+        long min = payload(0);
+        N--;
+        long priority = priority(N);
+        long payload = payload(N);
+        int hole = 0;
+        while (true) {
+            int first = ARITY * hole + 1;
+            if (first >= N) break;
+            int child = first;
+            long cp = priority(first);
+            int end = (int) Math.min((long) first + ARITY, N);
+            for (int c = first + 1; c < end; c++) {
+                long q = priority(c);
+                if (q < cp) {
+                    child = c;
+                    cp = q;
+                }
+            }
+            if (cp >= priority) break;
+            put(hole, cp, payload(child));
+            hole = child;
+        }
+        put(hole, priority, payload);
+        return min;
+    }
+
+    /**
+     * @return the lowest priority in the queue
+     * @throws NoSuchElementException if the queue is empty
+     */
+    public long minPriority() {
+        if (N == 0) throw new NoSuchElementException();
+        return priority(0);
+    }
+
+    /**
+     * @return payload of the entry delNext() would remove
+     * @throws NoSuchElementException if the queue is empty
+     */
+    public long minPayload() {
+        if (N == 0) throw new NoSuchElementException();
+        return payload(0);
+    }
+
+    public int size() {
+        return N;
+    }
+
+    /**
+     * @return number of entries the buffer has room for
+     */
+    public int capacity() {
+        return heap.capacity() / ENTRY_BYTES;
+    }
+
+    /**
+     * Grows the buffer to hold at least capacity entries.
+     *
+     * @throws IllegalArgumentException if capacity is over the maximum
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > maxCapacity) throw new IllegalArgumentException("Capacity is over the maximum of " + maxCapacity);
+        if (capacity > capacity()) resize(capacity);
+    }
+
+    /**
+     * Moves the entries to a buffer just big enough for them. The old
+     * buffer's memory goes back when it is garbage collected, not here.
+     */
+    public void trimToSize() {
+        if (N < capacity()) resize(Math.max(N, 1));
+    }
+
+    /**
+     * Removes every entry, keeping the buffer.
+     */
+    public void clear() {
+        N = 0;
+    }
+
+    private void resize(int capacity) {
+        ByteBuffer bigger = allocate(capacity);
+        ByteBuffer old = heap.duplicate();
+        old.limit(N * ENTRY_BYTES);
+        bigger.put(old);
+        bigger.clear();
+        heap = bigger;
+    }
+
+    private static ByteBuffer allocate(int capacity) {
+        return ByteBuffer.allocateDirect(capacity * ENTRY_BYTES).order(ByteOrder.nativeOrder());
+    }
+
+    private long priority(int k) {
+        return heap.getLong(k * ENTRY_BYTES);
+    }
+
+    private long payload(int k) {
+        return heap.getLong(k * ENTRY_BYTES + 8);
+    }
+
+    private void put(int k, long priority, long payload) {
+        heap.putLong(k * ENTRY_BYTES, priority);
+        heap.putLong(k * ENTRY_BYTES + 8, payload);
+    }
+}
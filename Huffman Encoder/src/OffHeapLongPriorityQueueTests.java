@@ -0,0 +1,83 @@
+import static org.junit.Assert.*;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class OffHeapLongPriorityQueueTests {
+
+    @Test
+    public void testInsertDelNext() {
+        OffHeapLongPriorityQueue pq = new OffHeapLongPriorityQueue(4);
+        pq.insert(30, 300);
+        pq.insert(-10, Long.MIN_VALUE);
+        pq.insert(20, 200);
+        assertEquals(3, pq.size());
+        assertEquals(-10, pq.minPriority());
+        assertEquals(Long.MIN_VALUE, pq.minPayload());
+        assertEquals(Long.MIN_VALUE, pq.delNext());
+        assertEquals(200, pq.delNext());
+        assertEquals(300, pq.delNext());
+        assertEquals(0, pq.size());
+    }
+
+    @Test
+    public void testRandomWithGrowth() {
+        // Starts at capacity 0 and doubles many times
+        OffHeapLongPriorityQueue pq = new OffHeapLongPriorityQueue(0);
+        Random RNG = new Random(1234);
+        int N = 100000;
+        long[] priorities = new long[N];
+        for (int i = 0; i < N; i++) {
+            priorities[i] = RNG.nextLong();
+            // Payload carries the priority so the order can be checked
+            pq.insert(priorities[i], ~priorities[i]);
+        }
+        assertTrue(pq.capacity() >= N);
+        Arrays.sort(priorities);
+        for (int i = 0; i < N; i++) {
+            assertEquals(priorities[i], pq.minPriority());
+            assertEquals(~priorities[i], pq.delNext());
+        }
+    }
+
+    @Test
+    public void testMaxCapacity() {
+        OffHeapLongPriorityQueue pq = new OffHeapLongPriorityQueue(1, 5);
+        for (int i = 0; i < 5; i++) pq.insert(i, i);
+        assertEquals(5, pq.capacity());
+        try {
+            pq.insert(9, 9);
+            fail("insert into a full queue");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(0, pq.delNext());
+        pq.insert(9, 9);
+        assertEquals(5, pq.size());
+    }
+
+    @Test
+    public void testTrimAndEnsureCapacity() {
+        OffHeapLongPriorityQueue pq = new OffHeapLongPriorityQueue(1000);
+        for (int i = 10; i > 0; i--) pq.insert(i, i);
+        pq.trimToSize();
+        assertEquals(10, pq.capacity());
+        pq.ensureCapacity(50);
+        assertEquals(50, pq.capacity());
+        for (int i = 1; i <= 10; i++) assertEquals(i, pq.delNext());
+        pq.clear();
+        assertEquals(0, pq.size());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testEmpty() {
+        new OffHeapLongPriorityQueue(1).delNext();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCapacityOverMaximum() {
+        new OffHeapLongPriorityQueue(10, 5);
+    }
+}
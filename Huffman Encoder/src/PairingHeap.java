@@ -0,0 +1,157 @@
+/**
+ * PriorityQueue as a pairing heap: a heap-ordered tree in which each
+ * node keeps its children as a linked list.
+ *
+ * insert() and meld() link two trees with one comparison, O(1).
+ * delNext() removes the root and pairs up its children left to right,
+ * then links the pairs right to left, O(log n) amortized.
+ * decreaseKey() cuts the entry's subtree out and links it to the root,
+ * O(log n) amortized in theory and close to O(1) in practice.
+ */
+public class PairingHeap<I extends Comparable<I>> implements PriorityQueue<I> {
+    /**
+     * A queued item, returned by add() for use with decreaseKey().
+     */
+    public static final class Entry<I> {
+        private I item;
+        private Entry<I> child;     // first child
+        private Entry<I> next;      // next sibling
+        private Entry<I> prev;      // previous sibling, or the parent for a first child
+
+        private Entry(I item) {
+            this.item = item;
+        }
+
+        public I item() {
+            return item;
+        }
+    }
+
+    private Entry<I> root;
+    private int N;      // number of items in the heap
+
+    @Override
+    public void insert(I item) {
+        add(item);
+    }
+
+    /**
+     * Inserts an item.
+     *
+     * @return its entry, valid until the item is removed
+     */
+    public Entry<I> add(I item) {
+        Entry<I> e = new Entry<>(item);
+        root = (root == null) ? e : link(root, e);
+        N++;
+        return e;
+    }
+
+    @Override
+    public I delNext() {
+        if (root == null) return null;
+        Entry<I> min = root;
+        root = combine(min.child);
+        min.child = null;
+        N--;
+        return min.item;
+    }
+
+    /**
+     * @return the item delNext() would return, or null if empty
+     */
+    public I peek() {
+        return (root == null) ? null : root.item;
+    }
+
+    @Override
+    public int size() {
+        return N;
+    }
+
+    /**
+     * Lowers the item of a queued entry.
+     *
+     * @param e -- entry returned by add() on this heap, not yet removed
+     * @param item -- new item, no greater than the current one
+     * @throws IllegalArgumentException if item is greater than the current one
+     */
+    public void decreaseKey(Entry<I> e, I item) {
+        if (item.compareTo(e.item) > 0) throw new IllegalArgumentException("Item is greater than the current one");
+        e.item = item;
+        if (e == root) return;
+        // Cut e's subtree out of its sibling list and link it with the root
+        if (e.prev.child == e) e.prev.child = e.next;
+        else e.prev.next = e.next;
+        if (e.next != null) e.next.prev = e.prev;
+        e.next = e.prev = null;
+        root = link(root, e);
+    }
+
+    /**
+     * Moves every item of other into this heap, leaving other empty.
+     * Entries of other stay valid and now belong to this heap.
+     */
+    public void meld(PairingHeap<I> other) {
+        if (other == this || other.root == null) return;
+        root = (root == null) ? other.root : link(root, other.root);
+        N += other.N;
+        other.root = null;
+        other.N = 0;
+    }
+
+    /**
+     * Makes the root with the larger item the first child of the other.
+     * Both must be roots without siblings.
+     *
+     * @return the new root
+     */
+    private Entry<I> link(Entry<I> a, Entry<I> b) {
+        if (b.item.compareTo(a.item) < 0) {
+            Entry<I> t = a;
+            a = b;
+            b = t;
+        }
+        b.prev = a;
+        b.next = a.child;
+        if (a.child != null) a.child.prev = b;
+        a.child = b;
+        return a;
+    }
+
+    /**
+     * Two-pass pairing of a sibling list.
+     *
+     * @return root of the single tree left, or null for an empty list
+     */
+    private Entry<I> combine(Entry<I> first) {
+        if (first == null) return null;
+        // First pass: link neighbours in pairs, stacking the winners through next
+        Entry<I> pairs = null;
+        Entry<I> e = first;
+        while (e != null) {
+            Entry<I> a = e;
+            Entry<I> b = a.next;
+            e = (b == null) ? null : b.next;
+            a.next = a.prev = null;
+            if (b != null) {
+                b.next = b.prev = null;
+                a = link(a, b);
+            }
+            a.next = pairs;
+            pairs = a;
+        }
+        // Second pass: the stack holds the last pair first, so this links right to left
+        Entry<I> result = pairs;
+        pairs = pairs.next;
+        result.next = null;
+        while (pairs != null) {
+            Entry<I> p = pairs;
+            pairs = p.next;
+            p.next = null;
+            result = link(result, p);
+        }
+        result.prev = null;
+        return result;
+    }
+}
@@ -0,0 +1,24 @@
+/**
+ * The PriorityQueue implementations callers can choose between.
+ *
+ *      BINARY    -- MinHeapPriorityQueue, compact and fast for delete-heavy use
+ *      PAIRING   -- PairingHeap, O(1) insert and meld
+ *      FIBONACCI -- FibonacciHeap, O(1) insert and meld, O(1) amortized decreaseKey
+ */
+public enum PriorityQueueBackend {
+    BINARY, PAIRING, FIBONACCI;
+
+    /**
+     * @return a new, empty queue of this kind
+     */
+    public <I extends Comparable<I>> PriorityQueue<I> create() {
+        switch (this) {
+            case PAIRING:
+                return new PairingHeap<>();
+            case FIBONACCI:
+                return new FibonacciHeap<>();
+            default:
+                return new MinHeapPriorityQueue<>();
+        }
+    }
+}
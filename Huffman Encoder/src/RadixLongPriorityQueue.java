@@ -0,0 +1,102 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * LongPriorityQueue for monotone priorities, as in Dijkstra's algorithm
+ * with non-negative integer weights: no priority inserted may be lower
+ * than the last one removed.
+ *
+ * A radix heap. Bucket 0 holds entries whose priority equals last, the
+ * priority most recently removed; bucket i > 0 holds those whose
+ * highest bit differing from last is bit i - 1. Every priority in a
+ * bucket is below every priority in the buckets above it. When bucket 0
+ * runs out, the lowest non-empty bucket is scanned for its minimum,
+ * which becomes last, and its entries are spread over lower buckets.
+ * An entry only moves down, at most 64 times, so the amortized cost of
+ * an operation grows with the number of bits in the priorities, not the
+ * number of entries, and no comparisons between entries are made
+ * except in those scans.
+ */
+public class RadixLongPriorityQueue implements LongPriorityQueue {
+    private static final int BUCKETS = 65;
+
+    private final long[][] priorities = new long[BUCKETS][];
+    private final int[][] values = new int[BUCKETS][];
+    private final int[] sizes = new int[BUCKETS];
+    private long last = Long.MIN_VALUE;
+    private int N;      // number of entries in all buckets
+
+    public RadixLongPriorityQueue() {
+        for (int i = 0; i < BUCKETS; i++) {
+            priorities[i] = new long[4];
+            values[i] = new int[4];
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if priority is lower than the last one removed
+     */
+    @Override
+    public void insert(long priority, int value) {
+        if (priority < last) {
+            throw new IllegalArgumentException("Priority " + priority + " is below the last removed, " + last);
+        }
+        add(bucket(priority), priority, value);
+        N++;
+    }
+
+    @Override
+    public int delNext() {
+        if (N == 0) throw new NoSuchElementException();
+        if (sizes[0] == 0) refill();
+        N--;
+        return values[0][--sizes[0]];
+    }
+
+    @Override
+    public long minPriority() {
+        if (N == 0) throw new NoSuchElementException();
+        if (sizes[0] == 0) refill();
+        return last;
+    }
+
+    @Override
+    public int size() {
+        return N;
+    }
+
+    /**
+     * Moves the entries of the lowest non-empty bucket into lower buckets,
+     * after making their minimum the new last. At least the minimum lands
+     * in bucket 0.
+     */
+    private void refill() {
+        int b = 1;
+        while (sizes[b] == 0) b++;
+        long[] p = priorities[b];
+        int[] v = values[b];
+        int n = sizes[b];
+        long min = p[0];
+        for (int i = 1; i < n; i++) min = Math.min(min, p[i]);
+        last = min;
+        sizes[b] = 0;
+        // Each entry differs from the new last in a lower bit than before, so
+        // lands in a bucket below b; b's arrays aren't written while read
+        for (int i = 0; i < n; i++) add(bucket(p[i]), p[i], v[i]);
+    }
+
+    private int bucket(long priority) {
+        return 64 - Long.numberOfLeadingZeros(priority ^ last);
+    }
+
+    private void add(int b, long priority, int value) {
+        int n = sizes[b];
+        if (n == priorities[b].length) {
+            priorities[b] = Arrays.copyOf(priorities[b], 2 * n);
+            values[b] = Arrays.copyOf(values[b], 2 * n);
+        }
+        priorities[b][n] = priority;
+        values[b][n] = value;
+        sizes[b] = n + 1;
+    }
+}
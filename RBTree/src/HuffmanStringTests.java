@@ -0,0 +1,101 @@
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class HuffmanStringTests {
+
+    private static final List<String> SAMPLES = Arrays.asList(
+            "the quick brown fox jumps over the lazy dog",
+            "a symbol table associates keys with values",
+            "red-black trees keep every path within twice the shortest");
+
+    @Test
+    public void testInsertSearch() {
+        HuffmanStringSymbolTable<Integer> tree = new HuffmanStringSymbolTable<Integer>(SAMPLES);
+        tree.insert(10, "ten");
+        tree.insert(5, "five");
+        tree.insert(15, "fifteen");
+
+        assertEquals("ten", tree.search(10));
+        assertEquals("five", tree.search(5));
+        assertEquals("fifteen", tree.search(15));
+        assertNull(tree.search(7));
+    }
+
+    @Test
+    public void testReplaceAndNull() {
+        HuffmanStringSymbolTable<String> tree = new HuffmanStringSymbolTable<String>(SAMPLES);
+        tree.insert("a", "first");
+        tree.insert("a", "second");
+        tree.insert("b", null);
+        tree.insert("c", "");
+
+        assertEquals("second", tree.search("a"));
+        assertNull(tree.search("b"));
+        assertEquals("", tree.search("c"));
+
+        assertEquals("second", tree.remove("a"));
+        assertNull(tree.search("a"));
+        assertNull(tree.remove("a"));
+    }
+
+    @Test
+    public void testUnseenCharacters() {
+        HuffmanStringSymbolTable<Integer> tree = new HuffmanStringSymbolTable<Integer>(SAMPLES);
+        String odd = "ZQX 0123456789 {}[] caf\u00e9 \u65e5\u672c \ud83d\ude00";
+        tree.insert(1, odd);
+        assertEquals(odd, tree.search(1));
+    }
+
+    @Test
+    public void testNoSamples() {
+        HuffmanStringSymbolTable<Integer> tree = new HuffmanStringSymbolTable<Integer>(new ArrayList<String>());
+        tree.insert(1, "any value at all");
+        assertEquals("any value at all", tree.search(1));
+    }
+
+    @Test
+    public void testLongValue() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) sb.append(SAMPLES.get(i % 3)).append(' ');
+        String text = sb.toString();
+        HuffmanStringSymbolTable<Integer> tree = new HuffmanStringSymbolTable<Integer>(SAMPLES);
+        tree.insert(1, text);
+        assertEquals(text, tree.search(1));
+        // English text averages around 4-5 bits a character
+        assertTrue(tree.encodedSize(text) < text.length() * 6 / 8);
+    }
+
+    @Test
+    public void testSkewedSamples() {
+        // Very uneven counts would give codes too long for the decoder
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1 << 20; i++) sb.append('e');
+        HuffmanStringSymbolTable<Integer> tree = new HuffmanStringSymbolTable<Integer>(Arrays.asList(sb.toString()));
+        String s = "every byte \u0000\u007f\u00ff still decodes";
+        tree.insert(1, s);
+        assertEquals(s, tree.search(1));
+    }
+
+    @Test
+    public void testManyValues() {
+        Random rng = new Random(1234);
+        HuffmanStringSymbolTable<Integer> tree = new HuffmanStringSymbolTable<Integer>(SAMPLES);
+        String[] vals = new String[500];
+        for (int i = 0; i < vals.length; i++) {
+            StringBuilder sb = new StringBuilder();
+            int len = rng.nextInt(200);
+            for (int j = 0; j < len; j++) sb.append((char) (' ' + rng.nextInt(95)));
+            vals[i] = sb.toString();
+            tree.insert(i, vals[i]);
+        }
+        for (int i = 0; i < vals.length; i++) {
+            assertEquals(vals[i], tree.search(i));
+        }
+    }
+}
@@ -1,6 +1,11 @@
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Random;
 import java.util.Vector;
 
@@ -17,6 +22,7 @@ public class RBSymbolTable<K extends Comparable<K>, V>
         public V val;
         public Node left, right;
         public Color color;
+        public int size;    // number of nodes in the subtree rooted here
 
         // go ahead and modify this constructor's parameters if you like
         public Node(K k, V v, Color c) {
@@ -24,11 +30,14 @@ public class RBSymbolTable<K extends Comparable<K>, V>
             val = v;
             left = right = null;
             color = c;
+            size = 1;
         }
     }
     private enum Color {BLACK, RED}
     // this is the root of our tree
     private Node root;
+    // changes whenever a key is added or removed, so iterators can tell
+    private int modCount;
 
     /*
      *  default constructor - this is invoked when we
@@ -39,6 +48,154 @@ public class RBSymbolTable<K extends Comparable<K>, V>
         root = null;
     }
 
+    /**
+     * Build a table from keys in increasing order, in linear time
+     * <p>
+     * Each subtree takes the middle key of its range as its root, so
+     * the tree is as balanced as possible. Only the deepest level can
+     * be incomplete; its nodes are red and the rest black, which gives
+     * every path the same number of black nodes.
+     *
+     * @param keys keys in strictly increasing order
+     *             Must not be null
+     * @param vals vals[i] is the value of keys[i]
+     * @return table holding the keys and values
+     * @throws IllegalArgumentException if the arrays differ in length
+     *         or the keys aren't strictly increasing
+     */
+    public static <K extends Comparable<K>, V> RBSymbolTable<K, V> fromSorted(K[] keys, V[] vals) {
+        if (keys.length != vals.length) throw new IllegalArgumentException("Need a value for every key");
+        return build(keys.length, new ArraySource<K, V>(keys, vals));
+    }
+
+    /**
+     * Build a table from entries in increasing key order, in linear time
+     * <p>
+     * Entries are taken from the iterator one at a time, in the order an
+     * in-order traversal visits them, so they never need to be held
+     * anywhere but in the tree. See fromSorted(K[], V[]) for the shape.
+     *
+     * @param size number of entries the iterator will return
+     * @param entries entries in strictly increasing key order
+     * @return table holding the entries
+     * @throws IllegalArgumentException if there are fewer than size entries
+     *         or the keys aren't strictly increasing
+     */
+    public static <K extends Comparable<K>, V> RBSymbolTable<K, V> fromSorted(
+            int size, Iterator<? extends Map.Entry<K, V>> entries) {
+        if (size < 0) throw new IllegalArgumentException("Size must not be negative");
+        return build(size, new IteratorSource<K, V>(entries));
+    }
+
+    private static <K extends Comparable<K>, V> RBSymbolTable<K, V> build(int size, SortedSource<K, V> source) {
+        RBSymbolTable<K, V> table = new RBSymbolTable<>();
+        table.root = table.build(source, size, 0, redLevel(size));
+        return table;
+    }
+
+    /**
+     * @param size number of nodes in a tree built by build()
+     * @return depth of the deepest level of the tree
+     */
+    private static int redLevel(int size) {
+        int level = -1;
+        for (int m = size; m > 0; m /= 2) level++;
+        return level;
+    }
+
+    /**
+     * Recursive helper for fromSorted
+     * <p>
+     * Builds the left subtree from the first half of the entries, takes
+     * the middle entry for the root, and builds the right subtree from
+     * the rest.
+     *
+     * @param source entries, positioned at this subtree's first
+     * @param size number of entries in this subtree
+     * @param depth depth of this subtree's root
+     * @param redLevel depth at which nodes are red
+     * @return root of the subtree, or null if size is 0
+     */
+    private Node build(SortedSource<K, V> source, int size, int depth, int redLevel) {
+        if (size == 0) return null;
+        int leftSize = (size - 1) / 2;
+        Node left = build(source, leftSize, depth + 1, redLevel);
+        source.advance();
+        Node tree = new Node(source.key, source.val, (depth == redLevel && depth > 0) ? Color.RED : Color.BLACK);
+        tree.left = left;
+        tree.right = build(source, size - 1 - leftSize, depth + 1, redLevel);
+        tree.size = size;
+        return tree;
+    }
+
+    /**
+     * Entries for fromSorted, checked to be in increasing key order
+     * as they are read
+     */
+    private static abstract class SortedSource<K extends Comparable<K>, V> {
+        K key;
+        V val;
+        private boolean started;
+
+        /**
+         * Move key and val on to the next entry
+         *
+         * @throws IllegalArgumentException if there is none, or its key
+         *         isn't greater than the last one
+         */
+        void advance() {
+            K last = key;
+            if (!next()) throw new IllegalArgumentException("Fewer entries than the given size");
+            if (started && key.compareTo(last) <= 0) {
+                throw new IllegalArgumentException("Keys are not in strictly increasing order at " + key);
+            }
+            started = true;
+        }
+
+        /**
+         * Load the next entry into key and val
+         *
+         * @return false if there are no more entries
+         */
+        abstract boolean next();
+    }
+
+    private static class ArraySource<K extends Comparable<K>, V> extends SortedSource<K, V> {
+        private final K[] keys;
+        private final V[] vals;
+        private int next;
+
+        ArraySource(K[] keys, V[] vals) {
+            this.keys = keys;
+            this.vals = vals;
+        }
+
+        @Override
+        boolean next() {
+            if (next == keys.length) return false;
+            key = keys[next];
+            val = vals[next++];
+            return true;
+        }
+    }
+
+    private static class IteratorSource<K extends Comparable<K>, V> extends SortedSource<K, V> {
+        private final Iterator<? extends Map.Entry<K, V>> entries;
+
+        IteratorSource(Iterator<? extends Map.Entry<K, V>> entries) {
+            this.entries = entries;
+        }
+
+        @Override
+        boolean next() {
+            if (!entries.hasNext()) return false;
+            Map.Entry<K, V> e = entries.next();
+            key = e.getKey();
+            val = e.getValue();
+            return true;
+        }
+    }
+
     /**
      * @param n Node in question
      * @return True if n is red, false if null or black
@@ -129,12 +286,22 @@ public class RBSymbolTable<K extends Comparable<K>, V>
      */
 
     public void insert(K key, V val) {
+        // If the key is already present, just replace its value
+        Node found = find(key);
+        if (found != null) {
+            found.val = val;
+            return;
+        }
+        modCount++;
         // If the root doesn't exist, make key the root node
         if (root == null) {
             root = new Node(key,val,Color.BLACK);
             return;
+        }
+        // The key is new, so every node on the way down gains one descendant
+        root.size++;
         // If the key is an immediate child of root, make new node
-        } else if (key.compareTo(root.key) < 0 && root.left==null){
+        if (key.compareTo(root.key) < 0 && root.left==null){
             root.left = new Node(key,val,Color.RED);
             return;
         } else if (key.compareTo(root.key) > 0 && root.right==null) {
@@ -152,6 +319,7 @@ public class RBSymbolTable<K extends Comparable<K>, V>
         // let p be a children of root, depending on the key's location
         if (key.compareTo(root.key) < 0) p = root.left;
         else p = root.right;
+        p.size++;
         // Proactively split p
         if (red(p.left) && red(p.right)) split(p);
         // Walk through tree until leaf is found
@@ -175,6 +343,7 @@ public class RBSymbolTable<K extends Comparable<K>, V>
                 return;
             }
             // If leaf isn't found, go down one level, proactively split, and fix double red
+            n.size++;
             if (red(n.left) && red(n.right)) {
                 split(n);
                 if (red(p)) {
@@ -209,6 +378,9 @@ public class RBSymbolTable<K extends Comparable<K>, V>
         Node root = tree.left;
         tree.left = root.right;
         root.right = tree;
+        // The subtree holds the same keys, so its new root takes over its size
+        root.size = tree.size;
+        resize(tree);
         return root;
     }
 
@@ -226,9 +398,132 @@ public class RBSymbolTable<K extends Comparable<K>, V>
         Node root = tree.right;
         tree.right = root.left;
         root.left = tree;
+        // The subtree holds the same keys, so its new root takes over its size
+        root.size = tree.size;
+        resize(tree);
         return root;
     }
 
+    /**
+     * Remove the designated key and its value
+     * <p>
+     * Top-down deletion, the mirror image of insert: rather than splitting
+     * four-nodes on the way down, it makes sure the node it steps into is
+     * red, by borrowing from a red child, flipping colors with a sibling
+     * (the reverse of split) or rotating a red nephew up. The node finally
+     * unlinked has at most one child and is red or has a red child, so no
+     * fix-up pass back up the tree is needed.
+     * <p>
+     * A key with two children isn't unlinked itself: the walk goes on to
+     * its in-order predecessor, which is unlinked and moved into its place.
+     *
+     * @param key key to remove
+     *            may not be null
+     * @return value the key had (may be null), or null if key is absent
+     */
+    @Override
+    public V remove(K key) {
+        Node found = find(key);
+        if (found == null) return null;
+        V removed = found.val;
+        modCount++;
+
+        // A false root above the real one, so the root has a parent like any other node
+        Node head = new Node(null, null, Color.BLACK);
+        head.right = root;
+        Node q = head, p = null, g = null;
+        boolean dir = true;
+        while (child(q, dir) != null) {
+            boolean last = dir;
+            g = p;
+            p = q;
+            q = child(q, dir);
+            // Past the key this heads left once, then right to the predecessor
+            dir = q.key.compareTo(key) < 0;
+            // Push a red node down, so q ends up red
+            if (!red(q) && !red(child(q, dir))) {
+                if (red(child(q, !dir))) {
+                    // Red child on the other side: rotate it above q
+                    Node top = single(q, dir);
+                    setChild(p, last, top);
+                    p = top;
+                } else {
+                    Node s = child(p, !last);
+                    if (s != null) {
+                        if (!red(s.left) && !red(s.right)) {
+                            // Sibling has no red children: merge with it by flipping colors
+                            p.color = Color.BLACK;
+                            s.color = Color.RED;
+                            q.color = Color.RED;
+                        } else {
+                            // Sibling has a red child: rotate it up to take p's place
+                            boolean dir2 = g.right == p;
+                            Node top = red(child(s, last)) ? doubleRotate(p, last) : single(p, last);
+                            setChild(g, dir2, top);
+                            q.color = Color.RED;
+                            top.color = Color.RED;
+                            top.left.color = Color.BLACK;
+                            top.right.color = Color.BLACK;
+                        }
+                    }
+                }
+            }
+        }
+
+        // q is found or its predecessor; every node above it loses one descendant
+        for (Node tree = head.right; tree != q; tree = (q.key.compareTo(tree.key) < 0) ? tree.left : tree.right) {
+            tree.size--;
+        }
+        found.key = q.key;
+        found.val = q.val;
+        setChild(p, p.right == q, (q.left != null) ? q.left : q.right);
+        root = head.right;
+        if (root != null) root.color = Color.BLACK;
+        return removed;
+    }
+
+    /**
+     * @param n node in question
+     * @param right true for the right child
+     * @return left or right child of n
+     */
+    private Node child(Node n, boolean right) {
+        return right ? n.right : n.left;
+    }
+
+    private void setChild(Node n, boolean right, Node c) {
+        if (right) n.right = c;
+        else n.left = c;
+    }
+
+    /**
+     * Single rotation that leaves tree red and the child
+     * that replaces it black
+     *
+     * @param tree node to be rotated
+     * @param right true to rotate right, false to rotate left
+     * @return root of tree post-rotation
+     */
+    private Node single(Node tree, boolean right) {
+        Node top = right ? rotateRight(tree) : rotateLeft(tree);
+        tree.color = Color.RED;
+        top.color = Color.BLACK;
+        return top;
+    }
+
+    /**
+     * Double rotation that brings tree's inner grandchild, on the
+     * side opposite the final rotation, to the top
+     *
+     * @param tree node to be rotated
+     * @param right true if the final rotation is to the right
+     * @return root of tree post-rotation
+     */
+    private Node doubleRotate(Node tree, boolean right) {
+        setChild(tree, !right, single(child(tree, !right), !right));
+        return single(tree, right);
+    }
+
     /**
      * Retrieve the value associated with the given key, if present
      * <p>
@@ -287,6 +582,228 @@ public class RBSymbolTable<K extends Comparable<K>, V>
         return (cmp < 0) ? searchHelper(tree.left, key) : searchHelper(tree.right, key);
     }
 
+    /**
+     * Iterative lookup of the node holding key
+     *
+     * @param key key to look for
+     * @return node with that key, or null if key is absent
+     */
+    private Node find(K key) {
+        Node tree = root;
+        while (tree != null) {
+            int cmp = key.compareTo(tree.key);
+            if (cmp == 0) return tree;
+            tree = (cmp < 0) ? tree.left : tree.right;
+        }
+        return null;
+    }
+
+    /**
+     * @param n Node in question
+     * @return number of nodes in the subtree rooted at n, 0 if null
+     */
+    private int size(Node n) {
+        return (n == null) ? 0 : n.size;
+    }
+
+    /**
+     * Recomputes the subtree size of n from its children
+     *
+     * @param n node whose children have correct sizes
+     */
+    private void resize(Node n) {
+        n.size = 1 + size(n.left) + size(n.right);
+    }
+
+    /**
+     * @return number of keys in the table
+     */
+    public int size() {
+        return size(root);
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    /**
+     * @return smallest key, or null if the table is empty
+     */
+    public K min() {
+        if (root == null) return null;
+        Node tree = root;
+        while (tree.left != null) tree = tree.left;
+        return tree.key;
+    }
+
+    /**
+     * @return largest key, or null if the table is empty
+     */
+    public K max() {
+        if (root == null) return null;
+        Node tree = root;
+        while (tree.right != null) tree = tree.right;
+        return tree.key;
+    }
+
+    /**
+     * @param key key to compare against
+     *            may not be null
+     * @return largest key less than or equal to key, or null if there is none
+     */
+    public K floor(K key) {
+        Node tree = root;
+        K best = null;
+        while (tree != null) {
+            int cmp = key.compareTo(tree.key);
+            if (cmp == 0) return tree.key;
+            if (cmp < 0) {
+                tree = tree.left;
+            } else {
+                // tree.key fits, but there may be a larger one on the right
+                best = tree.key;
+                tree = tree.right;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @param key key to compare against
+     *            may not be null
+     * @return smallest key greater than or equal to key, or null if there is none
+     */
+    public K ceiling(K key) {
+        Node tree = root;
+        K best = null;
+        while (tree != null) {
+            int cmp = key.compareTo(tree.key);
+            if (cmp == 0) return tree.key;
+            if (cmp > 0) {
+                tree = tree.right;
+            } else {
+                // tree.key fits, but there may be a smaller one on the left
+                best = tree.key;
+                tree = tree.left;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @param key key to rank
+     *            may not be null, need not be present
+     * @return number of keys in the table less than key
+     */
+    public int rank(K key) {
+        Node tree = root;
+        int rank = 0;
+        while (tree != null) {
+            int cmp = key.compareTo(tree.key);
+            if (cmp <= 0) {
+                if (cmp == 0) return rank + size(tree.left);
+                tree = tree.left;
+            } else {
+                // everything on the left, and tree itself, is smaller
+                rank += size(tree.left) + 1;
+                tree = tree.right;
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * @param rank position of the key in sorted order, starting at 0
+     * @return the key with exactly rank smaller keys
+     * @throws IllegalArgumentException unless 0 <= rank < size()
+     */
+    public K select(int rank) {
+        if (rank < 0 || rank >= size()) throw new IllegalArgumentException("Rank " + rank + " is out of range");
+        Node tree = root;
+        while (true) {
+            int left = size(tree.left);
+            if (rank == left) return tree.key;
+            if (rank < left) {
+                tree = tree.left;
+            } else {
+                rank -= left + 1;
+                tree = tree.right;
+            }
+        }
+    }
+
+    /**
+     * @return every key, in order
+     */
+    public Iterable<K> keys() {
+        return keys(null, null);
+    }
+
+    /**
+     * Keys in the half-open range [lo, hi), in order
+     * <p>
+     * The keys are found as the iteration goes, keeping only the path
+     * to the next key, so nothing is allocated per key and stopping
+     * early skips the rest of the range. Iterators fail with a
+     * ConcurrentModificationException once a key is added or removed.
+     *
+     * @param lo smallest key to include, or null for no lower bound
+     * @param hi first key to exclude, or null for no upper bound
+     * @return iterable over the keys in range
+     */
+    public Iterable<K> keys(final K lo, final K hi) {
+        return new Iterable<K>() {
+            @Override
+            public Iterator<K> iterator() {
+                return new RangeIterator(lo, hi);
+            }
+        };
+    }
+
+    /**
+     * In-order iterator that keeps a stack of nodes whose left subtree
+     * has been visited but which haven't been returned yet
+     */
+    private class RangeIterator implements Iterator<K> {
+        private final K hi;
+        private final ArrayDeque<Node> stack = new ArrayDeque<>();
+        private final int expectedModCount = modCount;
+
+        RangeIterator(K lo, K hi) {
+            this.hi = hi;
+            // Walk down to lo, stacking nodes that are at or above it
+            Node tree = root;
+            while (tree != null) {
+                if (lo != null && tree.key.compareTo(lo) < 0) {
+                    tree = tree.right;
+                } else {
+                    stack.push(tree);
+                    tree = tree.left;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+            return !stack.isEmpty() && (hi == null || stack.peek().key.compareTo(hi) < 0);
+        }
+
+        @Override
+        public K next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            Node n = stack.pop();
+            // The successor is the leftmost node of the right subtree, else an ancestor on the stack
+            for (Node tree = n.right; tree != null; tree = tree.left) stack.push(tree);
+            return n.key;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
     /**
      * Serialize tree into a vector for use with support functionality
      * <p>
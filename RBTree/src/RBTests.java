@@ -2,7 +2,11 @@ import org.junit.Test;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
 import java.util.Vector;
 
 public class RBTests {
@@ -196,4 +200,240 @@ public class RBTests {
         assertEquals(solnVector, st);
     }
 
+    @Test
+    public void testDuplicateInsert() {
+        RBSymbolTable<String, String> tree = new RBSymbolTable<String, String>();
+        for (char c : "SEARCHEXAMPLE".toCharArray()) {
+            tree.insert(String.valueOf(c), String.valueOf(c).toLowerCase());
+        }
+        tree.insert("E", "replaced");
+        tree.insert("S", "root");
+
+        assertEquals("replaced", tree.search("E"));
+        assertEquals("root", tree.search("S"));
+        assertEquals("x", tree.search("X"));
+        assertEquals(10, tree.serialize().size() / 2);
+    }
+
+    @Test
+    public void testMinMaxFloorCeiling() {
+        RBSymbolTable<Integer, Integer> tree = new RBSymbolTable<Integer, Integer>();
+        assertNull(tree.min());
+        assertNull(tree.max());
+        assertNull(tree.floor(5));
+        for (int k : new int[]{10, 5, 15, 2, 8, 20}) {
+            tree.insert(k, k);
+        }
+        assertEquals((Integer) 2, tree.min());
+        assertEquals((Integer) 20, tree.max());
+        assertEquals((Integer) 8, tree.floor(9));
+        assertEquals((Integer) 10, tree.floor(10));
+        assertNull(tree.floor(1));
+        assertEquals((Integer) 10, tree.ceiling(9));
+        assertEquals((Integer) 2, tree.ceiling(-100));
+        assertNull(tree.ceiling(21));
+    }
+
+    @Test
+    public void testRankSelect() {
+        RBSymbolTable<Integer, Integer> tree = new RBSymbolTable<Integer, Integer>();
+        java.util.TreeSet<Integer> reference = new java.util.TreeSet<Integer>();
+        Random RNG = new Random(1234);
+        for (int i = 0; i < 2000; i++) {
+            // Duplicates included, which must not change the sizes
+            int r = RNG.nextInt(1000);
+            tree.insert(r, r);
+            reference.add(r);
+        }
+        assertEquals(reference.size(), tree.size());
+        int rank = 0;
+        for (int k : reference) {
+            assertEquals(k, (int) tree.select(rank));
+            assertEquals(rank, tree.rank(k));
+            rank++;
+        }
+        assertEquals(0, tree.rank(-1));
+        assertEquals(reference.size(), tree.rank(1000));
+        assertEquals(reference.headSet(500).size(), tree.rank(500));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSelectOutOfRange() {
+        RBSymbolTable<Integer, Integer> tree = new RBSymbolTable<Integer, Integer>();
+        tree.insert(1, 1);
+        tree.select(1);
+    }
+
+    @Test
+    public void testRangeKeys() {
+        RBSymbolTable<Integer, Integer> tree = new RBSymbolTable<Integer, Integer>();
+        for (int i = 0; i < 100; i += 3) {
+            tree.insert(i, i);
+        }
+        List<Integer> keys = new ArrayList<Integer>();
+        for (int k : tree.keys(10, 30)) {
+            keys.add(k);
+        }
+        assertEquals(Arrays.asList(12, 15, 18, 21, 24, 27), keys);
+
+        keys.clear();
+        for (int k : tree.keys(12, 13)) {
+            keys.add(k);
+        }
+        assertEquals(Arrays.asList(12), keys);
+        assertFalse(tree.keys(13, 15).iterator().hasNext());
+        assertFalse(tree.keys(50, 10).iterator().hasNext());
+
+        int count = 0, last = -1;
+        for (int k : tree.keys()) {
+            assertTrue(k > last);
+            last = k;
+            count++;
+        }
+        assertEquals(tree.size(), count);
+    }
+
+    @Test(expected = java.util.ConcurrentModificationException.class)
+    public void testKeysAfterInsert() {
+        RBSymbolTable<Integer, Integer> tree = new RBSymbolTable<Integer, Integer>();
+        tree.insert(1, 1);
+        tree.insert(2, 2);
+        Iterator<Integer> it = tree.keys().iterator();
+        it.next();
+        tree.insert(3, 3);
+        it.next();
+    }
+
+    @Test
+    public void testRemoveLeafAndRoot() {
+        RBSymbolTable<Integer, Integer> tree = new RBSymbolTable<Integer, Integer>();
+        assertNull(tree.remove(1));
+        tree.insert(10, 100);
+        tree.insert(5, 50);
+        tree.insert(15, 150);
+        assertEquals((Integer) 50, tree.remove(5));
+        assertNull(tree.remove(5));
+        assertEquals((Integer) 100, tree.remove(10));
+        assertEquals(new Vector<String>(Arrays.asList("15:black", null, null)), tree.serialize());
+        assertEquals((Integer) 150, tree.remove(15));
+        assertTrue(tree.isEmpty());
+        assertEquals(new Vector<String>(Arrays.asList((String) null)), tree.serialize());
+    }
+
+    @Test
+    public void testRemoveRandom() {
+        RBSymbolTable<Integer, Integer> tree = new RBSymbolTable<Integer, Integer>();
+        java.util.TreeMap<Integer, Integer> reference = new java.util.TreeMap<Integer, Integer>();
+        Random RNG = new Random(1234);
+        for (int i = 0; i < 5000; i++) {
+            int k = RNG.nextInt(300);
+            if (RNG.nextInt(5) < 2) {
+                assertEquals(reference.remove(k), tree.remove(k));
+            } else {
+                tree.insert(k, i);
+                reference.put(k, i);
+            }
+            assertEquals(reference.size(), tree.size());
+            checkRedBlack(tree);
+        }
+        int rank = 0;
+        for (java.util.Map.Entry<Integer, Integer> e : reference.entrySet()) {
+            assertEquals(e.getValue(), tree.search(e.getKey()));
+            assertEquals(e.getKey(), tree.select(rank));
+            assertEquals(rank++, tree.rank(e.getKey()));
+        }
+        for (int k : reference.keySet()) {
+            tree.remove(k);
+        }
+        assertTrue(tree.isEmpty());
+    }
+
+    /**
+     * Checks the serialized tree for a black root, no red node with a red
+     * child, and the same number of black nodes on every path down
+     */
+    private static void checkRedBlack(RBSymbolTable<Integer, ?> tree) {
+        Vector<String> st = tree.serialize();
+        if (st.get(0) != null) assertTrue(st.get(0).endsWith(":black"));
+        int[] pos = {0};
+        blackHeight(st, pos, false);
+        assertEquals(st.size(), pos[0]);
+    }
+
+    private static int blackHeight(Vector<String> st, int[] pos, boolean parentRed) {
+        String node = st.get(pos[0]++);
+        if (node == null) return 1;
+        boolean red = node.endsWith(":red");
+        assertFalse("red node " + node + " has a red parent", red && parentRed);
+        int left = blackHeight(st, pos, red);
+        int right = blackHeight(st, pos, red);
+        assertEquals("black heights differ below " + node, left, right);
+        return left + (red ? 0 : 1);
+    }
+
+    @Test
+    public void testFromSortedShape() {
+        RBSymbolTable<Integer, Integer> tree = RBSymbolTable.fromSorted(
+                new Integer[]{1, 2, 3, 4, 5}, new Integer[]{10, 20, 30, 40, 50});
+        String[] soln = new String[]{"3:black", "1:black", null, "2:red", null, null,
+                "4:black", null, "5:red", null, null};
+        assertEquals(new Vector<String>(Arrays.asList(soln)), tree.serialize());
+        assertEquals((Integer) 40, tree.search(4));
+    }
+
+    @Test
+    public void testFromSortedSizes() {
+        for (int n = 0; n < 300; n++) {
+            Integer[] keys = new Integer[n];
+            String[] vals = new String[n];
+            for (int i = 0; i < n; i++) {
+                keys[i] = 2 * i;
+                vals[i] = "v" + i;
+            }
+            RBSymbolTable<Integer, String> tree = RBSymbolTable.fromSorted(keys, vals);
+            assertEquals(n, tree.size());
+            checkRedBlack(tree);
+            for (int i = 0; i < n; i++) {
+                assertEquals(vals[i], tree.search(2 * i));
+                assertEquals(keys[i], tree.select(i));
+            }
+        }
+    }
+
+    @Test
+    public void testFromSortedIteratorThenModify() {
+        java.util.TreeMap<Integer, Integer> reference = new java.util.TreeMap<Integer, Integer>();
+        for (int i = 0; i < 1000; i += 2) {
+            reference.put(i, -i);
+        }
+        RBSymbolTable<Integer, Integer> tree = RBSymbolTable.fromSorted(reference.size(), reference.entrySet().iterator());
+        checkRedBlack(tree);
+        // A bulk-loaded tree must take inserts and removes like any other
+        Random RNG = new Random(1234);
+        for (int i = 0; i < 2000; i++) {
+            int k = RNG.nextInt(1000);
+            if (RNG.nextBoolean()) {
+                assertEquals(reference.remove(k), tree.remove(k));
+            } else {
+                tree.insert(k, i);
+                reference.put(k, i);
+            }
+            checkRedBlack(tree);
+        }
+        assertEquals(reference.size(), tree.size());
+        for (int k : reference.keySet()) {
+            assertEquals(reference.get(k), tree.search(k));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromSortedUnsorted() {
+        RBSymbolTable.fromSorted(new Integer[]{1, 3, 3, 4}, new Integer[]{1, 3, 3, 4});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromSortedShortIterator() {
+        RBSymbolTable.fromSorted(5, new java.util.TreeMap<Integer, Integer>().entrySet().iterator());
+    }
+
 }